@@ -0,0 +1,78 @@
+package com.github.zavier.customer.support.agent.bug;
+
+import com.github.zavier.customer.support.config.BugTrackingProperties;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 不同打开工单数下的相似工单查找与满容量时的新建（含淘汰），耗时应不随工单数增长
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BugTicketStoreBenchmark {
+
+    private static final String ALPHABET = "登录支付订单页面报错无法显示导出上传图片刷新失败超时提示按钮";
+
+    @Param({"1000", "10000", "100000"})
+    private int tickets;
+
+    private BugTicketStore store;
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final SplittableRandom random = new SplittableRandom(42);
+    private int[] duplicateSignature;
+    private int[] distinctSignature;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final BugTrackingProperties properties = new BugTrackingProperties();
+        properties.setMaxOpenTickets(tickets);
+        store = new BugTicketStore(properties, clock::incrementAndGet);
+        String report = null;
+        for (int i = 0; i < tickets; i++) {
+            report = randomReport();
+            store.report(report, "topic");
+        }
+        final MinHash minHash = new MinHash(properties.getBands() * properties.getRows(), properties.getShingleSize());
+        duplicateSignature = minHash.signature("topic " + report + "。");
+        distinctSignature = minHash.signature("topic " + randomReport());
+    }
+
+    /**
+     * 命中已有工单
+     */
+    @Benchmark
+    public Object lookupDuplicate() {
+        return store.findSimilar(duplicateSignature, clock.get());
+    }
+
+    /**
+     * 没有相似工单
+     */
+    @Benchmark
+    public Object lookupDistinct() {
+        return store.findSimilar(distinctSignature, clock.get());
+    }
+
+    /**
+     * 工单数保持在上限，每次新建都会关闭最久没有上报的工单
+     */
+    @Benchmark
+    public Object reportAtCapacity() {
+        return store.report(randomReport(), "topic");
+    }
+
+    private String randomReport() {
+        final StringBuilder report = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            report.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.zavier.customer.support.agent.serializer;
+
+import com.github.zavier.customer.support.agent.MessageClassification;
+import com.github.zavier.customer.support.agent.constant.Intent;
+import com.github.zavier.customer.support.agent.constant.Urgency;
+import org.bsc.langgraph4j.RunnableConfig;
+import org.bsc.langgraph4j.checkpoint.BaseCheckpointSaver;
+import org.bsc.langgraph4j.checkpoint.Checkpoint;
+import org.bsc.langgraph4j.checkpoint.MemorySaver;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DeltaCheckpointSaver 与 MemorySaver 对比：写入一次多轮对话的检查点、读取最新检查点、遍历历史。
+ * 使用 -prof gc 查看每次操作的分配量
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckpointSaverBenchmark {
+
+    @Param({"memory", "delta"})
+    private String saver;
+
+    // 对话轮数，每轮依次经过 classifyIntent、searchDocumentation、draftResponse 三个节点
+    @Param({"1", "10"})
+    private int turns;
+
+    private BaseCheckpointSaver checkpointSaver;
+    private List<Checkpoint> conversation;
+    private RunnableConfig populated;
+    private final AtomicLong threadSequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        checkpointSaver = "delta".equals(saver) ? new DeltaCheckpointSaver() : new MemorySaver();
+        conversation = conversation(turns);
+        populated = RunnableConfig.builder().threadId("populated").build();
+        write(populated);
+    }
+
+    @Benchmark
+    public RunnableConfig putConversation() throws Exception {
+        final RunnableConfig config = RunnableConfig.builder()
+                .threadId("thread-" + threadSequence.incrementAndGet())
+                .build();
+        final RunnableConfig result = write(config);
+        checkpointSaver.clear(config);
+        return result;
+    }
+
+    @Benchmark
+    public Optional<Checkpoint> getLatest() {
+        return checkpointSaver.get(populated);
+    }
+
+    @Benchmark
+    public void listHistory(Blackhole blackhole) {
+        for (Checkpoint checkpoint : checkpointSaver.list(populated)) {
+            blackhole.consume(checkpoint.getState());
+        }
+    }
+
+    private RunnableConfig write(RunnableConfig config) throws Exception {
+        RunnableConfig current = config;
+        for (Checkpoint checkpoint : conversation) {
+            // config 不带 checkPointId，每次都是追加新检查点
+            current = checkpointSaver.put(config, Checkpoint.builder()
+                    .id(UUID.randomUUID().toString())
+                    .nodeId(checkpoint.getNodeId())
+                    .nextNodeId(checkpoint.getNextNodeId())
+                    .state(checkpoint.getState())
+                    .build());
+        }
+        return current;
+    }
+
+    private static List<Checkpoint> conversation(int turns) {
+        final String document = "账户安全相关说明，".repeat(80);
+        List<Checkpoint> checkpoints = new ArrayList<>();
+        Map<String, Object> state = new HashMap<>();
+        for (int turn = 0; turn < turns; turn++) {
+            state.put("messageContent", "第 " + turn + " 轮：我无法登录账户，提示密码错误，已经重置过一次密码");
+            state.put("userName", "alice");
+            state.remove("classification");
+            state.remove("searchResults");
+            state.remove("draftResponse");
+            checkpoints.add(checkpoint("__START__", "classifyIntent", state));
+
+            state.put("classification", new MessageClassification(Intent.QUESTION, Urgency.MEDIUM,
+                    "账户登录", "用户无法登录账户"));
+            checkpoints.add(checkpoint("classifyIntent", "searchDocumentation", state));
+
+            state.put("searchResults", List.of("[account-security.md] " + document,
+                    "[faq.md] " + document, "[login.md] " + document));
+            checkpoints.add(checkpoint("searchDocumentation", "draftResponse", state));
+
+            state.put("draftResponse", "您好，请尝试通过找回密码功能重新设置密码，" + "如仍无法登录请联系客服。".repeat(10));
+            checkpoints.add(checkpoint("draftResponse", "__END__", state));
+        }
+        return checkpoints;
+    }
+
+    private static Checkpoint checkpoint(String nodeId, String nextNodeId, Map<String, Object> state) {
+        return Checkpoint.builder()
+                .nodeId(nodeId)
+                .nextNodeId(nextNodeId)
+                .state(new HashMap<>(state))
+                .build();
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.zavier.customer.support.agent.serializer;
+
+import com.github.zavier.customer.support.agent.MessageAgentState;
+import com.github.zavier.customer.support.agent.MessageClassification;
+import com.github.zavier.customer.support.agent.constant.Intent;
+import com.github.zavier.customer.support.agent.constant.Urgency;
+import org.bsc.langgraph4j.serializer.StateSerializer;
+import org.bsc.langgraph4j.serializer.std.ObjectStreamStateSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageAgentStateSerializer 与默认的 ObjectStreamStateSerializer 对比：编码、解码、复制一步的状态。
+ * encode 的辅助计数 encodedBytes / encodedSteps 即每一步的编码字节数，使用 -prof gc 查看每次操作的分配量
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateSerializerBenchmark {
+
+    @Param({"objectStream", "message"})
+    private String serializer;
+
+    // 执行到该节点时的状态，越往后的节点 key 越多
+    @Param({"classifyIntent", "searchDocumentation", "draftResponse"})
+    private String step;
+
+    private StateSerializer<MessageAgentState> stateSerializer;
+    private Map<String, Object> state;
+    private byte[] encoded;
+
+    /**
+     * 每次调用累加，两者相除得到每一步的编码字节数
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+        public long encodedBytes;
+        public long encodedSteps;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            encodedBytes = 0;
+            encodedSteps = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        stateSerializer = "message".equals(serializer)
+                ? new MessageAgentStateSerializer()
+                : new ObjectStreamStateSerializer<>(MessageAgentState::new);
+        state = state(step);
+        encoded = stateSerializer.objectToBytes(state);
+    }
+
+    @Benchmark
+    public byte[] encode(EncodedSize size) throws Exception {
+        final byte[] bytes = stateSerializer.objectToBytes(state);
+        size.encodedBytes += bytes.length;
+        size.encodedSteps++;
+        return bytes;
+    }
+
+    @Benchmark
+    public Map<String, Object> decode() throws Exception {
+        return stateSerializer.bytesToObject(encoded);
+    }
+
+    /**
+     * 图执行每一步复制状态的方式
+     */
+    @Benchmark
+    public Object cloneState() throws Exception {
+        return stateSerializer.cloneObject(state);
+    }
+
+    private static Map<String, Object> state(String step) {
+        final String document = "账户安全相关说明，".repeat(80);
+        Map<String, Object> state = new HashMap<>();
+        state.put("messageContent", "我无法登录账户，提示密码错误，已经重置过一次密码");
+        state.put("userName", "alice");
+        state.put("bugTicketId", "");
+        if (step.equals("classifyIntent")) {
+            return state;
+        }
+        state.put("classification", new MessageClassification(Intent.QUESTION, Urgency.MEDIUM,
+                "账户登录", "用户无法登录账户"));
+        if (step.equals("searchDocumentation")) {
+            return state;
+        }
+        state.put("searchResults", List.of("[account-security.md] " + document,
+                "[faq.md] " + document, "[login.md] " + document));
+        state.put("draftResponse", "您好，请尝试通过找回密码功能重新设置密码，" + "如仍无法登录请联系客服。".repeat(10));
+        return state;
+    }
+}
@@ -2,9 +2,11 @@ package com.github.zavier.customer.support;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.retry.annotation.EnableRetry;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 @EnableRetry
 public class CustomerSupportApplication {
 
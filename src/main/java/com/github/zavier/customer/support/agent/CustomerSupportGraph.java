@@ -4,19 +4,32 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.zavier.customer.support.agent.constant.Intent;
 import com.github.zavier.customer.support.agent.constant.Urgency;
+import com.github.zavier.customer.support.agent.journal.ConversationJournal;
+import com.github.zavier.customer.support.agent.journal.JournalEvent;
+import com.github.zavier.customer.support.agent.llm.ModelRouter;
 import com.github.zavier.customer.support.agent.node.*;
+import com.github.zavier.customer.support.agent.resilience.NodeGuard;
+import com.github.zavier.customer.support.agent.resilience.RequestDeadline;
+import com.github.zavier.customer.support.agent.serializer.DeltaCheckpointSaver;
+import com.github.zavier.customer.support.agent.serializer.MessageAgentStateSerializer;
+import com.github.zavier.customer.support.config.ResilienceProperties;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.bsc.async.AsyncGenerator;
 import org.bsc.langgraph4j.*;
-import org.bsc.langgraph4j.checkpoint.MemorySaver;
+import org.bsc.langgraph4j.action.CommandAction;
 import org.bsc.langgraph4j.state.StateSnapshot;
 import org.bsc.langgraph4j.utils.EdgeMappings;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static org.bsc.langgraph4j.action.AsyncCommandAction.command_async;
 
@@ -24,6 +37,9 @@ import static org.bsc.langgraph4j.action.AsyncCommandAction.command_async;
 @Component
 public class CustomerSupportGraph {
 
+    // RunnableConfig metadata 中的进度回调，用于在节点开始执行时推送事件
+    private static final String PROGRESS_METADATA_KEY = "progress";
+
     @Resource
     private ClassifyIntentCmdNode classifyIntentCmdNode;
     @Resource
@@ -37,24 +53,32 @@ public class CustomerSupportGraph {
 
     @Resource
     private ObjectMapper objectMapper;
+    @Resource
+    private NodeGuard nodeGuard;
+    @Resource
+    private ResilienceProperties resilienceProperties;
+    @Resource
+    private ConversationJournal conversationJournal;
 
 
     private CompiledGraph<MessageAgentState> graph;
+    private final DeltaCheckpointSaver checkpointSaver = new DeltaCheckpointSaver();
 
     @PostConstruct
     public void init() throws GraphStateException {
-        final StateGraph<MessageAgentState> builder = new StateGraph<>(MessageAgentState.SCHEMA, MessageAgentState::new)
-                .addNode("classifyIntent", command_async(classifyIntentCmdNode), mappings())
-                .addNode("searchDocumentation", command_async(searchDocumentationCmdNode), mappings())
+        final StateGraph<MessageAgentState> builder = new StateGraph<>(MessageAgentState.SCHEMA, new MessageAgentStateSerializer())
+                .addNode("classifyIntent", command_async(nodeGuard.guard("classifyIntent", classifyIntentCmdNode)), mappings())
+                .addNode("searchDocumentation", command_async(announced("searchDocumentation",
+                        nodeGuard.guard("searchDocumentation", searchDocumentationCmdNode))), mappings())
                 .addNode("humanReview", command_async(humanReviewCmdNode), mappings())
-                .addNode("draftResponse", command_async(draftResponseCmdNode), mappings())
-                .addNode("bugTracking", command_async(bugTrackingCmdNode), mappings())
+                .addNode("draftResponse", command_async(announced("draftResponse",
+                        nodeGuard.guard("draftResponse", draftResponseCmdNode))), mappings())
+                .addNode("bugTracking", command_async(nodeGuard.guard("bugTracking", bugTrackingCmdNode)), mappings())
 
                 .addEdge(StateGraph.START, "classifyIntent");
 
-        final MemorySaver memorySaver = new MemorySaver();
         final CompileConfig compileConfig = CompileConfig.builder()
-                .checkpointSaver(memorySaver)
+                .checkpointSaver(checkpointSaver)
                 .interruptBefore("humanReview")
                 .releaseThread(true)
                 .build();
@@ -63,20 +87,45 @@ public class CustomerSupportGraph {
     }
 
     public Optional<MessageAgentState> run(Map<String, Object> initData, RunnableConfig runnableConfig) {
+        return run(initData, runnableConfig, progress -> {});
+    }
+
+    /**
+     * 以流式方式执行，每个节点完成后回调 listener，耗时较长的节点开始前同样回调
+     */
+    public Optional<MessageAgentState> run(Map<String, Object> initData,
+                                           RunnableConfig runnableConfig,
+                                           Consumer<NodeProgress> listener) {
         Assert.notNull(graph, "graph cannot be null");
         Assert.notNull(initData, "initData cannot be null");
         Assert.notNull(runnableConfig, "runnableConfig cannot be null");
+        Assert.notNull(listener, "listener cannot be null");
 
-        return graph.invoke(initData, runnableConfig);
+        final RunnableConfig config = withProgress(withDeadline(runnableConfig), listener);
+        journal(config, threadId -> JournalEvent.input(threadId,
+                (String) initData.get("userName"), (String) initData.get("messageContent")));
+        // 检查点会把上一轮的状态合并进来，清掉上一轮关联的工单，只保留本次 bugTracking 的结果
+        final Map<String, Object> input = new HashMap<>(initData);
+        input.put("bugTicketId", "");
+        return collect(graph.stream(input, config), config, listener);
     }
 
     public Optional<MessageAgentState> resume(RunnableConfig runnableConfig, String feedback) {
+        return resume(runnableConfig, feedback, progress -> {});
+    }
+
+    public Optional<MessageAgentState> resume(RunnableConfig runnableConfig,
+                                              String feedback,
+                                              Consumer<NodeProgress> listener) {
         Assert.notNull(graph, "graph cannot be null");
         Assert.notNull(runnableConfig, "runnableConfig cannot be null");
+        Assert.notNull(listener, "listener cannot be null");
 
+        journal(runnableConfig, threadId -> JournalEvent.resume(threadId, feedback));
         try {
-            var updateConfig = graph.updateState(runnableConfig, Map.of("humanDecision", feedback));
-            return graph.invoke(GraphInput.resume(), updateConfig);
+            var updateConfig = graph.updateState(withProgress(withDeadline(runnableConfig), listener),
+                    Map.of("humanDecision", feedback));
+            return collect(graph.stream(GraphInput.resume(), updateConfig), updateConfig, listener);
         } catch (Exception e) {
             log.error("resume updateState error", e);
             throw new RuntimeException("中断恢复异常");
@@ -107,12 +156,117 @@ public class CustomerSupportGraph {
     }
 
 
+    /**
+     * 释放线程的检查点，预热、回放结束和会话过期后调用
+     */
+    public void release(String threadId) {
+        try {
+            checkpointSaver.release(RunnableConfig.builder().threadId(threadId).build());
+        } catch (Exception e) {
+            log.warn("释放检查点失败 thread:{}", threadId, e);
+        }
+    }
+
+    public Map<String, Object> checkpointStats() {
+        return checkpointSaver.stats();
+    }
+
     public boolean isInterrupt(RunnableConfig runnableConfig) {
         // // interruptBefore humanReview 处理
         final StateSnapshot<MessageAgentState> stateSnapshot = graph.getState(runnableConfig);
         return "humanReview".equalsIgnoreCase(stateSnapshot.next());
     }
 
+    private Optional<MessageAgentState> collect(AsyncGenerator<NodeOutput<MessageAgentState>> outputs,
+                                                RunnableConfig config,
+                                                Consumer<NodeProgress> listener) {
+        final long start = System.currentTimeMillis();
+        long last = start;
+        MessageAgentState finalState = null;
+        final StringJoiner timings = new StringJoiner(", ");
+
+        for (NodeOutput<MessageAgentState> output : outputs) {
+            finalState = output.state();
+            if (StateGraph.START.equals(output.node()) || StateGraph.END.equals(output.node())) {
+                continue;
+            }
+            final long now = System.currentTimeMillis();
+            final NodeProgress progress = new NodeProgress(output.node(), NodeProgress.stageOf(output.node()),
+                    now - last, now - start, output.state());
+            last = now;
+            timings.add(output.node() + "=" + progress.durationMs() + "ms");
+            journal(config, threadId -> JournalEvent.node(threadId, progress.node(), progress.durationMs()));
+            if ("classifyIntent".equals(output.node())) {
+                output.state().classification().ifPresent(classification ->
+                        journal(config, threadId -> JournalEvent.classification(threadId, classification)));
+            }
+            notifyProgress(listener, progress);
+        }
+
+        final long elapsed = System.currentTimeMillis() - start;
+        final boolean interrupted = finalState != null && isInterrupt(config);
+        if (interrupted) {
+            notifyProgress(listener, new NodeProgress("humanReview", NodeProgress.AWAITING_REVIEW, 0, elapsed, finalState));
+        }
+        if (finalState != null) {
+            final String draftResponse = finalState.draftResponse();
+            journal(config, threadId -> JournalEvent.draft(threadId,
+                    interrupted ? NodeProgress.AWAITING_REVIEW : "completed", draftResponse, elapsed));
+        }
+        log.info("图执行完成 thread:{} 总耗时:{}ms [{}]", config.threadId().orElse(""), elapsed, timings);
+        return Optional.ofNullable(finalState);
+    }
+
+    private void notifyProgress(Consumer<NodeProgress> listener, NodeProgress progress) {
+        try {
+            listener.accept(progress);
+        } catch (Exception e) {
+            // 进度通知失败不影响图的执行
+            log.warn("节点进度通知失败 node:{}", progress.node(), e);
+        }
+    }
+
+    /**
+     * 写入会话日志，桩模型执行（预热、回放）不记录
+     */
+    private void journal(RunnableConfig config, Function<String, JournalEvent> event) {
+        if (ModelRouter.isStub(config)) {
+            return;
+        }
+        conversationJournal.record(event.apply(config.threadId().orElse("")));
+    }
+
+    /**
+     * 节点开始执行前推送开始事件，让客户端在搜索、生成回复期间显示当前进度
+     */
+    private CommandAction<MessageAgentState> announced(String node, CommandAction<MessageAgentState> action) {
+        final String stage = NodeProgress.startStageOf(node);
+        return (state, config) -> {
+            config.metadata(PROGRESS_METADATA_KEY)
+                    .filter(ProgressTracker.class::isInstance)
+                    .map(ProgressTracker.class::cast)
+                    .ifPresent(tracker -> notifyProgress(tracker.listener(),
+                            new NodeProgress(node, stage, 0, System.currentTimeMillis() - tracker.start(), state)));
+            return action.apply(state, config);
+        };
+    }
+
+    private RunnableConfig withProgress(RunnableConfig runnableConfig, Consumer<NodeProgress> listener) {
+        return RunnableConfig.builder(runnableConfig)
+                .addMetadata(PROGRESS_METADATA_KEY, new ProgressTracker(listener, System.currentTimeMillis()))
+                .build();
+    }
+
+    /**
+     * 每次 run/resume 都是一次新的请求，重新计算截止时间
+     */
+    private RunnableConfig withDeadline(RunnableConfig runnableConfig) {
+        return RequestDeadline.withTimeout(runnableConfig, resilienceProperties.getRequestTimeout());
+    }
+
+    private record ProgressTracker(Consumer<NodeProgress> listener, long start) {
+    }
+
     private Map<String, String> mappings() {
         return EdgeMappings.builder()
                 .toEND()
@@ -24,6 +24,9 @@ public class MessageAgentState extends AgentState {
 
     private String humanDecision;
 
+    // 关联的Bug工单
+    private String bugTicketId;
+
     public static final Map<String, Channel<?>> SCHEMA = Map.of(
             "searchResults", Channels.base((oldValue, newValue) -> newValue)
     );
@@ -40,6 +43,10 @@ public class MessageAgentState extends AgentState {
         return this.<String>value("messageContent").orElse("");
     }
 
+    public String userName() {
+        return this.<String>value("userName").orElse("");
+    }
+
     public Optional<MessageClassification> classification() {
         return value("classification");
     }
@@ -59,4 +66,11 @@ public class MessageAgentState extends AgentState {
     public String humanDecision() {
         return this.<String>value("humanDecision").orElse("");
     }
+
+    /**
+     * 本次执行关联的Bug工单，每次 run 开始时重置为空串，避免沿用上一轮检查点中的工单
+     */
+    public Optional<String> bugTicketId() {
+        return this.<String>value("bugTicketId").filter(ticketId -> !ticketId.isEmpty());
+    }
 }
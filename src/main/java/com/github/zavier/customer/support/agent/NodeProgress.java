@@ -0,0 +1,33 @@
+package com.github.zavier.customer.support.agent;
+
+import java.util.Map;
+
+/**
+ * 节点进度事件，durationMs 为该节点耗时（开始事件为 0），elapsedMs 为本次请求已耗时
+ */
+public record NodeProgress(String node, String stage, long durationMs, long elapsedMs, MessageAgentState state) {
+
+    public static final String AWAITING_REVIEW = "awaiting_review";
+
+    private static final Map<String, String> STAGES = Map.of(
+            "classifyIntent", "classified",
+            "searchDocumentation", "searched",
+            "bugTracking", "ticket_created",
+            "draftResponse", "drafted",
+            "humanReview", "reviewed"
+    );
+
+    // 耗时较长的节点在开始执行前推送开始事件
+    private static final Map<String, String> START_STAGES = Map.of(
+            "searchDocumentation", "searching",
+            "draftResponse", "drafting"
+    );
+
+    public static String stageOf(String node) {
+        return STAGES.getOrDefault(node, node);
+    }
+
+    public static String startStageOf(String node) {
+        return START_STAGES.get(node);
+    }
+}
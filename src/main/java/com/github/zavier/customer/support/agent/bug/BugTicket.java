@@ -0,0 +1,74 @@
+package com.github.zavier.customer.support.agent.bug;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 本地Bug工单，重复上报只增加计数并刷新最后上报时间
+ */
+public class BugTicket {
+
+    private final String id;
+    private final String topic;
+    private final String firstReport;
+    private final int[] signature;
+    private final long createdAt;
+    private volatile long lastReportedAt;
+    private final AtomicInteger reports = new AtomicInteger(1);
+    // 首次生成的状态回复，重复上报直接复用
+    private final AtomicReference<String> statusResponse = new AtomicReference<>();
+
+    public BugTicket(String id, String topic, String firstReport, int[] signature, long now) {
+        this.id = id;
+        this.topic = topic;
+        this.firstReport = firstReport;
+        this.signature = signature;
+        this.createdAt = now;
+        this.lastReportedAt = now;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String topic() {
+        return topic;
+    }
+
+    public String firstReport() {
+        return firstReport;
+    }
+
+    int[] signature() {
+        return signature;
+    }
+
+    public long createdAt() {
+        return createdAt;
+    }
+
+    public long lastReportedAt() {
+        return lastReportedAt;
+    }
+
+    public int reports() {
+        return reports.get();
+    }
+
+    public Optional<String> statusResponse() {
+        return Optional.ofNullable(statusResponse.get());
+    }
+
+    int attach(long now) {
+        lastReportedAt = now;
+        return reports.incrementAndGet();
+    }
+
+    /**
+     * 只保留第一次生成的回复
+     */
+    boolean recordStatusResponse(String response) {
+        return statusResponse.compareAndSet(null, response);
+    }
+}
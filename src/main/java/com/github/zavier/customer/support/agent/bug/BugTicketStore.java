@@ -0,0 +1,224 @@
+package com.github.zavier.customer.support.agent.bug;
+
+import com.github.zavier.customer.support.config.BugTrackingProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 本地Bug工单存储，按上报文本和主题的 MinHash/LSH 索引查找相似的打开工单，
+ * 相似的上报归并到已有工单而不是新建。
+ * 打开的工单另按最后上报时间排序，过期和超出上限时从最旧的一端关闭，每个工单 O(log n)
+ */
+@Slf4j
+@Component
+public class BugTicketStore {
+
+    @Resource
+    private BugTrackingProperties bugTrackingProperties;
+
+    private MinHash minHash;
+    private LshIndex index;
+    private final Map<String, BugTicket> openTickets = new ConcurrentHashMap<>();
+    // 按最后上报时间排序的打开工单，最旧的在前
+    private final ConcurrentSkipListMap<Activity, BugTicket> byActivity = new ConcurrentSkipListMap<>();
+    private final LongSupplier clock;
+    private final AtomicLong sequence = new AtomicLong(10000);
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder lookupNanos = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder reusedResponses = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    public BugTicketStore() {
+        this.clock = System::currentTimeMillis;
+    }
+
+    /**
+     * 不经过 Spring 创建，用于测试和基准测试
+     */
+    BugTicketStore(BugTrackingProperties bugTrackingProperties, LongSupplier clock) {
+        this.bugTrackingProperties = bugTrackingProperties;
+        this.clock = clock;
+        init();
+    }
+
+    @PostConstruct
+    public void init() {
+        minHash = new MinHash(bugTrackingProperties.getBands() * bugTrackingProperties.getRows(),
+                bugTrackingProperties.getShingleSize());
+        index = new LshIndex(bugTrackingProperties.getBands(), bugTrackingProperties.getRows());
+    }
+
+    /**
+     * 上报Bug，存在相似的打开工单时归并，否则新建工单
+     */
+    public Report report(String content, String topic) {
+        final long now = clock.getAsLong();
+        final int[] signature = minHash.signature(topic + " " + content);
+
+        Optional<BugTicket> similar = findSimilar(signature, now);
+        if (similar.isEmpty()) {
+            // 并发的相同上报只创建一个工单
+            synchronized (this) {
+                similar = findSimilar(signature, now);
+                if (similar.isEmpty()) {
+                    return new Report(create(content, topic, signature, now), false);
+                }
+            }
+        }
+        final BugTicket ticket = similar.get();
+        final int reports = attach(ticket, now);
+        duplicates.increment();
+        log.info("重复的Bug上报 ticket:{} reports:{}", ticket.id(), reports);
+        return new Report(ticket, true);
+    }
+
+    /**
+     * 记录工单的状态回复，后续重复上报直接复用
+     */
+    public void recordStatusResponse(String ticketId, String response) {
+        final BugTicket ticket = openTickets.get(ticketId);
+        if (ticket != null && ticket.recordStatusResponse(response)) {
+            log.info("Bug工单状态回复已保存 ticket:{}", ticketId);
+        }
+    }
+
+    public void markResponseReused() {
+        reusedResponses.increment();
+    }
+
+    public Map<String, Object> stats() {
+        final long lookupCount = lookups.sum();
+        final List<Map<String, Object>> topTickets = openTickets.values().stream()
+                .sorted(Comparator.comparingInt(BugTicket::reports).reversed())
+                .limit(10)
+                .map(ticket -> Map.<String, Object>of(
+                        "id", ticket.id(),
+                        "topic", ticket.topic(),
+                        "reports", ticket.reports(),
+                        "hasStatusResponse", ticket.statusResponse().isPresent()))
+                .toList();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("openTickets", openTickets.size());
+        stats.put("created", created.sum());
+        stats.put("duplicates", duplicates.sum());
+        stats.put("reusedResponses", reusedResponses.sum());
+        stats.put("expired", expired.sum());
+        stats.put("evicted", evicted.sum());
+        stats.put("lookups", lookupCount);
+        stats.put("avgLookupMicros", lookupCount == 0 ? 0 : lookupNanos.sum() / lookupCount / 1000.0);
+        stats.put("indexBuckets", index.bucketCount());
+        stats.put("topTickets", topTickets);
+        return stats;
+    }
+
+    Optional<BugTicket> findSimilar(int[] signature, long now) {
+        final long start = System.nanoTime();
+        BugTicket best = null;
+        double bestSimilarity = bugTrackingProperties.getSimilarityThreshold();
+        for (String id : index.candidates(signature)) {
+            final BugTicket ticket = openTickets.get(id);
+            if (ticket == null || isExpired(ticket, now)) {
+                continue;
+            }
+            final double similarity = MinHash.similarity(signature, ticket.signature());
+            if (similarity >= bestSimilarity) {
+                best = ticket;
+                bestSimilarity = similarity;
+            }
+        }
+        lookups.increment();
+        lookupNanos.add(System.nanoTime() - start);
+        return Optional.ofNullable(best);
+    }
+
+    private BugTicket create(String content, String topic, int[] signature, long now) {
+        if (openTickets.size() >= bugTrackingProperties.getMaxOpenTickets()) {
+            evict(now);
+        }
+        final BugTicket ticket = new BugTicket("BUG-" + sequence.incrementAndGet(), topic, content, signature, now);
+        // 先加入排序，查找到的工单一定已在排序中，attach 才能调整它的位置
+        byActivity.put(new Activity(now, ticket.id()), ticket);
+        openTickets.put(ticket.id(), ticket);
+        index.add(ticket.id(), signature);
+        created.increment();
+        log.info("创建Bug工单 ticket:{} topic:{}", ticket.id(), topic);
+        return ticket;
+    }
+
+    /**
+     * 关闭过期工单，仍然超出上限时关闭最久没有上报的工单
+     */
+    private void evict(long now) {
+        final long expiredBefore = now - bugTrackingProperties.getOpenDuration().toMillis();
+        Map.Entry<Activity, BugTicket> oldest;
+        while ((oldest = byActivity.firstEntry()) != null && oldest.getKey().lastReportedAt() < expiredBefore) {
+            close(oldest.getValue());
+            expired.increment();
+        }
+        if (openTickets.size() >= bugTrackingProperties.getMaxOpenTickets()
+                && (oldest = byActivity.firstEntry()) != null) {
+            close(oldest.getValue());
+            evicted.increment();
+        }
+    }
+
+    /**
+     * 刷新最后上报时间并调整排序，与 close 互斥，已关闭的工单不再放回
+     */
+    private int attach(BugTicket ticket, long now) {
+        synchronized (ticket) {
+            final Activity previous = new Activity(ticket.lastReportedAt(), ticket.id());
+            final int reports = ticket.attach(Math.max(now, ticket.lastReportedAt()));
+            if (byActivity.remove(previous, ticket)) {
+                byActivity.put(new Activity(ticket.lastReportedAt(), ticket.id()), ticket);
+            }
+            return reports;
+        }
+    }
+
+    private void close(BugTicket ticket) {
+        synchronized (ticket) {
+            byActivity.remove(new Activity(ticket.lastReportedAt(), ticket.id()), ticket);
+            if (openTickets.remove(ticket.id(), ticket)) {
+                index.remove(ticket.id(), ticket.signature());
+            }
+        }
+    }
+
+    private boolean isExpired(BugTicket ticket, long now) {
+        return now - ticket.lastReportedAt() > bugTrackingProperties.getOpenDuration().toMillis();
+    }
+
+    /**
+     * 上报结果，duplicate 表示归并到了已有工单
+     */
+    public record Report(BugTicket ticket, boolean duplicate) {
+    }
+
+    private record Activity(long lastReportedAt, String ticketId) implements Comparable<Activity> {
+
+        @Override
+        public int compareTo(Activity other) {
+            final int byTime = Long.compare(lastReportedAt, other.lastReportedAt);
+            return byTime != 0 ? byTime : ticketId.compareTo(other.ticketId);
+        }
+    }
+}
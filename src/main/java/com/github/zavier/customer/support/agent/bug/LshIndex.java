@@ -0,0 +1,60 @@
+package com.github.zavier.customer.support.agent.bug;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MinHash 签名的 LSH 分段索引：签名切成 bands 段，任意一段完全相同即成为候选，
+ * 查询代价只与段数有关，与已索引的工单数量无关
+ */
+public class LshIndex {
+
+    private final int bands;
+    private final int rows;
+    private final ConcurrentHashMap<Long, Set<String>> buckets = new ConcurrentHashMap<>();
+
+    public LshIndex(int bands, int rows) {
+        this.bands = bands;
+        this.rows = rows;
+    }
+
+    public void add(String id, int[] signature) {
+        for (int band = 0; band < bands; band++) {
+            buckets.computeIfAbsent(bandKey(signature, band), key -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    public void remove(String id, int[] signature) {
+        for (int band = 0; band < bands; band++) {
+            buckets.computeIfPresent(bandKey(signature, band), (key, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    public Set<String> candidates(int[] signature) {
+        Set<String> candidates = new HashSet<>();
+        for (int band = 0; band < bands; band++) {
+            final Set<String> ids = buckets.get(bandKey(signature, band));
+            if (ids != null) {
+                candidates.addAll(ids);
+            }
+        }
+        return candidates;
+    }
+
+    public int bucketCount() {
+        return buckets.size();
+    }
+
+    private long bandKey(int[] signature, int band) {
+        long key = band;
+        final int offset = band * rows;
+        for (int i = offset; i < offset + rows; i++) {
+            key = key * 0x9E3779B97F4A7C15L + signature[i];
+        }
+        return key;
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.zavier.customer.support.agent.bug;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * 文本的 MinHash 签名：忽略标点空白并转小写后按字符切分 shingle，
+ * 每个 shingle 只计算一次 64 位哈希，再通过 multiply-shift 派生出 numHashes 个哈希函数
+ */
+public final class MinHash {
+
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private final int numHashes;
+    private final int shingleSize;
+    private final long[] multipliers;
+    private final long[] increments;
+
+    public MinHash(int numHashes, int shingleSize) {
+        this.numHashes = numHashes;
+        this.shingleSize = shingleSize;
+        this.multipliers = new long[numHashes];
+        this.increments = new long[numHashes];
+        // 固定种子，保证重启后签名一致
+        final SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < numHashes; i++) {
+            multipliers[i] = random.nextLong() | 1L;
+            increments[i] = random.nextLong();
+        }
+    }
+
+    public int numHashes() {
+        return numHashes;
+    }
+
+    public int[] signature(String text) {
+        final int[] signature = new int[numHashes];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+
+        final int[] codePoints = normalize(text);
+        if (codePoints.length == 0) {
+            return signature;
+        }
+        final int shingles = Math.max(1, codePoints.length - shingleSize + 1);
+        final int width = Math.min(shingleSize, codePoints.length);
+        for (int start = 0; start < shingles; start++) {
+            long hash = SEED;
+            for (int i = start; i < start + width; i++) {
+                hash = (hash ^ codePoints[i]) * 0x100000001B3L;
+            }
+            hash = mix(hash);
+            for (int i = 0; i < numHashes; i++) {
+                // 取高 31 位作为非负的哈希值
+                final int value = (int) ((multipliers[i] * hash + increments[i]) >>> 33);
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * 两个签名相同位置取值一致的比例，即 Jaccard 相似度的估计值
+     */
+    public static double similarity(int[] left, int[] right) {
+        int same = 0;
+        for (int i = 0; i < left.length; i++) {
+            if (left[i] == right[i]) {
+                same++;
+            }
+        }
+        return (double) same / left.length;
+    }
+
+    private static int[] normalize(String text) {
+        if (text == null) {
+            return new int[0];
+        }
+        return text.codePoints()
+                .filter(Character::isLetterOrDigit)
+                .map(Character::toLowerCase)
+                .toArray();
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.zavier.customer.support.agent.docs;
+
+import java.util.Map;
+
+/**
+ * 文档分块，termFreqs 为分词后的词频，内容未变化的分块直接复用
+ */
+public record DocChunk(String docPath, int ordinal, String text, String hash, Map<String, Integer> termFreqs, int length) {
+
+    public DocChunk relocate(String docPath, int ordinal) {
+        return new DocChunk(docPath, ordinal, text, hash, termFreqs, length);
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.zavier.customer.support.agent.docs;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 不可变的 BM25 倒排索引快照，构建完成后整体替换，搜索期间不受文档更新影响
+ * <p>
+ * 英文和数字按单词切分，中文按相邻两个字切分
+ */
+public final class DocumentIndex {
+
+    public static final DocumentIndex EMPTY = new DocumentIndex(List.of(), 0);
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final List<DocChunk> chunks;
+    private final Map<String, int[]> postings;
+    private final double avgLength;
+    private final long generation;
+
+    private DocumentIndex(List<DocChunk> chunks, long generation) {
+        this.chunks = chunks;
+        this.generation = generation;
+
+        Map<String, List<Integer>> termChunks = new HashMap<>();
+        long totalLength = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            final DocChunk chunk = chunks.get(i);
+            totalLength += chunk.length();
+            for (String term : chunk.termFreqs().keySet()) {
+                termChunks.computeIfAbsent(term, key -> new ArrayList<>()).add(i);
+            }
+        }
+        Map<String, int[]> postings = new HashMap<>(termChunks.size() * 2);
+        termChunks.forEach((term, ids) -> postings.put(term, ids.stream().mapToInt(Integer::intValue).toArray()));
+        this.postings = postings;
+        this.avgLength = chunks.isEmpty() ? 0 : (double) totalLength / chunks.size();
+    }
+
+    public static DocumentIndex build(List<DocChunk> chunks, long generation) {
+        return new DocumentIndex(List.copyOf(chunks), generation);
+    }
+
+    public List<DocChunk> search(String query, int topK) {
+        if (chunks.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, Double> scores = new HashMap<>();
+        for (String term : terms(query).keySet()) {
+            final int[] ids = postings.get(term);
+            if (ids == null) {
+                continue;
+            }
+            final double idf = Math.log(1 + (chunks.size() - ids.length + 0.5) / (ids.length + 0.5));
+            for (int id : ids) {
+                final DocChunk chunk = chunks.get(id);
+                final int tf = chunk.termFreqs().get(term);
+                final double norm = tf + K1 * (1 - B + B * chunk.length() / avgLength);
+                scores.merge(id, idf * tf * (K1 + 1) / norm, Double::sum);
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue(Comparator.reverseOrder()))
+                .limit(topK)
+                .map(entry -> chunks.get(entry.getKey()))
+                .toList();
+    }
+
+    public int size() {
+        return chunks.size();
+    }
+
+    public int termCount() {
+        return postings.size();
+    }
+
+    public long generation() {
+        return generation;
+    }
+
+    public static Map<String, Integer> terms(String text) {
+        Map<String, Integer> terms = new HashMap<>();
+        if (text == null) {
+            return terms;
+        }
+        final int[] codePoints = text.toLowerCase().codePoints().toArray();
+        StringBuilder word = new StringBuilder();
+        int previousCjk = -1;
+        for (int codePoint : codePoints) {
+            if (isCjk(codePoint)) {
+                flushWord(word, terms);
+                if (previousCjk >= 0) {
+                    terms.merge(new String(new int[]{previousCjk, codePoint}, 0, 2), 1, Integer::sum);
+                } else {
+                    terms.merge(new String(new int[]{codePoint}, 0, 1), 1, Integer::sum);
+                }
+                previousCjk = codePoint;
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                word.appendCodePoint(codePoint);
+                previousCjk = -1;
+            } else {
+                flushWord(word, terms);
+                previousCjk = -1;
+            }
+        }
+        flushWord(word, terms);
+        return terms;
+    }
+
+    private static void flushWord(StringBuilder word, Map<String, Integer> terms) {
+        if (!word.isEmpty()) {
+            terms.merge(word.toString(), 1, Integer::sum);
+            word.setLength(0);
+        }
+    }
+
+    private static boolean isCjk(int codePoint) {
+        return Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN;
+    }
+}
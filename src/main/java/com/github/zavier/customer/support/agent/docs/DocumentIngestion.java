@@ -0,0 +1,298 @@
+package com.github.zavier.customer.support.agent.docs;
+
+import com.github.zavier.customer.support.config.DocsProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 增量文档导入：后台线程定期检查文档目录，变更的文档按段落分块，
+ * 内容哈希未变化的分块复用已有分词结果，构建完成的新索引原子替换到 DocumentSearch
+ */
+@Slf4j
+@Component
+public class DocumentIngestion {
+
+    private static final Set<String> EXTENSIONS = Set.of(".md", ".markdown", ".txt");
+
+    @Resource
+    private DocsProperties docsProperties;
+    @Resource
+    private DocumentSearch documentSearch;
+
+    private ScheduledExecutorService executor;
+    // 首次导入完成（包括失败、目录不存在）后计数归零
+    private final CountDownLatch initialIngestion = new CountDownLatch(1);
+
+    // 以下字段只由导入线程访问
+    private final Map<String, FileVersion> versions = new HashMap<>();
+    private final Map<String, List<DocChunk>> docChunks = new HashMap<>();
+    private long generation;
+
+    private volatile Map<String, Object> lastIngestion = Map.of();
+    private volatile long totalChunksIndexed;
+    private volatile long totalChunksSkipped;
+
+    @PostConstruct
+    public void init() {
+        if (!docsProperties.isEnabled()) {
+            initialIngestion.countDown();
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "docs-ingestion");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::scanSafely, 0,
+                docsProperties.getScanInterval().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 等待首次导入完成，超时返回 false
+     */
+    public boolean awaitInitialIngestion(Duration timeout) {
+        try {
+            return initialIngestion.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public boolean isInitialIngestionDone() {
+        return initialIngestion.getCount() == 0;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(documentSearch.stats());
+        stats.put("directory", docsProperties.getDirectory());
+        stats.put("totalChunksIndexed", totalChunksIndexed);
+        stats.put("totalChunksSkipped", totalChunksSkipped);
+        stats.put("lastIngestion", lastIngestion);
+        return stats;
+    }
+
+    private void scanSafely() {
+        try {
+            scan();
+        } catch (Exception e) {
+            // 导入失败时继续使用旧索引
+            log.error("文档导入失败 directory:{}", docsProperties.getDirectory(), e);
+        } finally {
+            initialIngestion.countDown();
+        }
+    }
+
+    private void scan() throws IOException {
+        final Path directory = Paths.get(docsProperties.getDirectory());
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        final long start = System.nanoTime();
+
+        final Map<String, FileVersion> current = new HashMap<>();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.filter(Files::isRegularFile).filter(DocumentIngestion::isDocument).toList()) {
+                current.put(directory.relativize(file).toString(),
+                        new FileVersion(Files.getLastModifiedTime(file).toMillis(), Files.size(file)));
+            }
+        }
+
+        final Set<String> changedDocs = new HashSet<>();
+        versions.keySet().stream().filter(doc -> !current.containsKey(doc)).forEach(changedDocs::add);
+        current.forEach((doc, version) -> {
+            if (!version.equals(versions.get(doc))) {
+                changedDocs.add(doc);
+            }
+        });
+        if (changedDocs.isEmpty()) {
+            return;
+        }
+
+        // 旧分块按哈希索引，内容未变的分块不再分词
+        final Map<String, DocChunk> previousByHash = new HashMap<>();
+        final Set<String> changedTerms = new HashSet<>();
+        for (String doc : changedDocs) {
+            for (DocChunk chunk : docChunks.getOrDefault(doc, List.of())) {
+                previousByHash.put(chunk.hash(), chunk);
+            }
+        }
+
+        // 在副本上构建，索引替换成功后才提交，失败时下一轮仍能识别出同样的变更
+        final Map<String, List<DocChunk>> nextChunks = new HashMap<>(docChunks);
+        final Map<String, FileVersion> nextVersions = new HashMap<>(versions);
+        long chars = 0;
+        int indexed = 0;
+        int skipped = 0;
+        final List<String> failedDocs = new ArrayList<>();
+        final Set<String> retainedHashes = new HashSet<>();
+        for (String doc : changedDocs) {
+            if (!current.containsKey(doc)) {
+                nextChunks.remove(doc);
+                nextVersions.remove(doc);
+                continue;
+            }
+            final String content;
+            final List<String> texts;
+            try {
+                content = Files.readString(directory.resolve(doc), StandardCharsets.UTF_8);
+                texts = chunk(content, docsProperties.getChunkSize());
+            } catch (IOException | RuntimeException e) {
+                // 非 UTF-8 编码或读取失败的文档跳过，保留上次成功导入的分块，文件再次变更前不重试
+                log.warn("文档读取失败，已跳过 doc:{} error:{}", doc, e.toString());
+                failedDocs.add(doc);
+                nextVersions.put(doc, current.get(doc));
+                for (DocChunk chunk : docChunks.getOrDefault(doc, List.of())) {
+                    retainedHashes.add(chunk.hash());
+                }
+                continue;
+            }
+            chars += content.length();
+
+            List<DocChunk> chunks = new ArrayList<>();
+            for (String text : texts) {
+                final String hash = hash(text);
+                final DocChunk previous = previousByHash.get(hash);
+                if (previous != null) {
+                    chunks.add(previous.relocate(doc, chunks.size()));
+                    retainedHashes.add(hash);
+                    skipped++;
+                } else {
+                    final Map<String, Integer> termFreqs = DocumentIndex.terms(text);
+                    final int length = termFreqs.values().stream().mapToInt(Integer::intValue).sum();
+                    chunks.add(new DocChunk(doc, chunks.size(), text, hash, Map.copyOf(termFreqs), length));
+                    changedTerms.addAll(termFreqs.keySet());
+                    indexed++;
+                }
+            }
+            nextChunks.put(doc, chunks);
+            nextVersions.put(doc, current.get(doc));
+        }
+        // 被删除的分块同样会影响搜索结果
+        previousByHash.forEach((hash, chunk) -> {
+            if (!retainedHashes.contains(hash)) {
+                changedTerms.addAll(chunk.termFreqs().keySet());
+            }
+        });
+        failedDocs.forEach(changedDocs::remove);
+        if (changedDocs.isEmpty()) {
+            versions.clear();
+            versions.putAll(nextVersions);
+            return;
+        }
+
+        final long buildStart = System.nanoTime();
+        final DocumentIndex index = DocumentIndex.build(
+                nextChunks.values().stream().flatMap(List::stream).toList(), generation + 1);
+        final long buildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - buildStart);
+
+        documentSearch.swap(index, changedDocs, changedTerms);
+        generation = index.generation();
+        docChunks.clear();
+        docChunks.putAll(nextChunks);
+        versions.clear();
+        versions.putAll(nextVersions);
+
+        final long elapsedNanos = System.nanoTime() - start;
+        final double seconds = Math.max(elapsedNanos, 1) / 1_000_000_000.0;
+        totalChunksIndexed += indexed;
+        totalChunksSkipped += skipped;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("generation", generation);
+        report.put("changedDocs", changedDocs.size());
+        report.put("failedDocs", failedDocs);
+        report.put("chunksIndexed", indexed);
+        report.put("chunksSkipped", skipped);
+        report.put("buildMillis", buildMillis);
+        report.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        report.put("chunksPerSecond", (indexed + skipped) / seconds);
+        report.put("charsPerSecond", chars / seconds);
+        report.put("timestamp", System.currentTimeMillis());
+        lastIngestion = report;
+        log.info("文档导入完成 {}", report);
+    }
+
+    /**
+     * 按空行切分段落，合并相邻段落直到达到 chunkSize，超长段落直接截断
+     */
+    static List<String> chunk(String content, int chunkSize) {
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String paragraph : content.split("\\n\\s*\\n")) {
+            String text = paragraph.strip();
+            while (text.length() > chunkSize) {
+                flush(current, chunks);
+                chunks.add(text.substring(0, chunkSize));
+                text = text.substring(chunkSize);
+            }
+            if (text.isEmpty()) {
+                continue;
+            }
+            if (!current.isEmpty() && current.length() + text.length() + 1 > chunkSize) {
+                flush(current, chunks);
+            }
+            if (!current.isEmpty()) {
+                current.append('\n');
+            }
+            current.append(text);
+        }
+        flush(current, chunks);
+        return chunks;
+    }
+
+    private static void flush(StringBuilder current, List<String> chunks) {
+        if (!current.isEmpty()) {
+            chunks.add(current.toString());
+            current.setLength(0);
+        }
+    }
+
+    private static String hash(String text) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isDocument(Path file) {
+        final String fileName = file.getFileName().toString().toLowerCase();
+        return EXTENSIONS.stream().anyMatch(fileName::endsWith);
+    }
+
+    private record FileVersion(long lastModified, long size) {
+    }
+}
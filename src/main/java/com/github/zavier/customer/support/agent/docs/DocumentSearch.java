@@ -0,0 +1,133 @@
+package com.github.zavier.customer.support.agent.docs;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.zavier.customer.support.config.DocsProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对当前索引快照搜索，并缓存搜索结果，缓存以规范化后的查询词为 key，并记录结果所属的索引版本。
+ * 替换索引时只失效引用了变更文档、或查询词与变更内容有交集的缓存，其余缓存更新为新版本
+ */
+@Slf4j
+@Component
+public class DocumentSearch {
+
+    @Resource
+    private DocsProperties docsProperties;
+
+    private volatile DocumentIndex index = DocumentIndex.EMPTY;
+    private Cache<String, CachedResult> cache;
+
+    private volatile long lastSwapMicros;
+    private volatile long lastInvalidated;
+    private final LongAdder staleEntries = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(docsProperties.getCacheSize())
+                .expireAfterWrite(1, TimeUnit.HOURS)
+                .recordStats()
+                .build();
+    }
+
+    public List<DocChunk> search(String query) {
+        // 整个搜索使用同一个快照
+        final DocumentIndex snapshot = index;
+        final Set<String> queryTerms = DocumentIndex.terms(query).keySet();
+        final String key = cacheKey(queryTerms);
+
+        final CachedResult cached = cache.getIfPresent(key);
+        if (cached != null && cached.generation() == snapshot.generation()) {
+            return cached.hits();
+        }
+        if (cached != null) {
+            // 搜索期间索引被替换时写入的旧结果，按未命中处理
+            staleEntries.increment();
+        }
+        final CachedResult result = new CachedResult(snapshot.search(query, docsProperties.getTopK()),
+                queryTerms, snapshot.generation());
+        cache.put(key, result);
+        return result.hits();
+    }
+
+    /**
+     * 搜索只与查询词的集合有关，大小写、标点、词序和重复词不同的查询共用缓存
+     */
+    private static String cacheKey(Set<String> queryTerms) {
+        return String.join(" ", new TreeSet<>(queryTerms));
+    }
+
+    /**
+     * 原子替换索引，changedDocs 为新增、修改或删除的文档，changedTerms 为变更分块包含的词
+     */
+    void swap(DocumentIndex newIndex, Set<String> changedDocs, Set<String> changedTerms) {
+        final long start = System.nanoTime();
+        final long previousGeneration = index.generation();
+        index = newIndex;
+
+        long invalidated = 0;
+        for (Map.Entry<String, CachedResult> entry : cache.asMap().entrySet()) {
+            final CachedResult cached = entry.getValue();
+            if (cached.generation() == newIndex.generation()) {
+                // 替换后基于新索引写入的结果
+                continue;
+            }
+            if (cached.generation() == previousGeneration && !cached.isAffectedBy(changedDocs, changedTerms)) {
+                // 基于被替换索引且不受变更影响的结果在新索引下仍然有效，更新为新的版本号
+                cache.asMap().replace(entry.getKey(), cached, cached.withGeneration(newIndex.generation()));
+            } else {
+                // 受变更影响，或来自更早的索引（本次变更无法判断其是否有效）
+                cache.asMap().remove(entry.getKey(), cached);
+                invalidated++;
+            }
+        }
+        lastSwapMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        lastInvalidated = invalidated;
+        log.info("文档索引已替换 generation:{} chunks:{} invalidated:{} swap:{}us",
+                newIndex.generation(), newIndex.size(), invalidated, lastSwapMicros);
+    }
+
+    public Map<String, Object> stats() {
+        final DocumentIndex snapshot = index;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("generation", snapshot.generation());
+        stats.put("chunks", snapshot.size());
+        stats.put("terms", snapshot.termCount());
+        stats.put("lastSwapMicros", lastSwapMicros);
+        stats.put("lastInvalidated", lastInvalidated);
+        stats.put("cachedQueries", cache.estimatedSize());
+        stats.put("cacheHitRate", cache.stats().hitRate());
+        stats.put("staleEntries", staleEntries.sum());
+        return stats;
+    }
+
+    private record CachedResult(List<DocChunk> hits, Set<String> queryTerms, long generation) {
+
+        CachedResult withGeneration(long newGeneration) {
+            return new CachedResult(hits, queryTerms, newGeneration);
+        }
+
+        boolean isAffectedBy(Set<String> changedDocs, Set<String> changedTerms) {
+            for (DocChunk hit : hits) {
+                if (changedDocs.contains(hit.docPath())) {
+                    return true;
+                }
+            }
+            return !Collections.disjoint(queryTerms, changedTerms);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.github.zavier.customer.support.agent.journal;
+
+import com.github.zavier.customer.support.config.JournalProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 只追加的会话日志：请求线程只把事件放入无锁队列，
+ * 由单独的写入线程批量编码后写入内存映射的段文件
+ */
+@Slf4j
+@Component
+public class ConversationJournal {
+
+    @Resource
+    private JournalProperties journalProperties;
+
+    private final ConcurrentLinkedQueue<JournalEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+
+    // 以下字段只由写入线程访问
+    private Path directory;
+    private long segmentSequence;
+    private MappedByteBuffer segment;
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+
+    private volatile Thread writer;
+    private volatile boolean running;
+    private volatile long written;
+    private volatile long writtenBytes;
+    private volatile int segments;
+    private volatile int deletedSegments;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!journalProperties.isEnabled()) {
+            return;
+        }
+        directory = Paths.get(journalProperties.getDirectory());
+        Files.createDirectories(directory);
+        // 不追加到已有文件，从最大序号之后开始
+        final List<Path> existing = JournalCodec.segments(directory);
+        segmentSequence = existing.size();
+        if (!existing.isEmpty()) {
+            final String last = existing.get(existing.size() - 1).getFileName().toString();
+            segmentSequence = Long.parseLong(last.substring(JournalCodec.SEGMENT_PREFIX.length(),
+                    last.length() - JournalCodec.SEGMENT_SUFFIX.length())) + 1;
+        }
+        enforceRetention(null);
+
+        running = true;
+        writer = new Thread(this::writeLoop, "conversation-journal");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("会话日志已启动 directory:{}", directory.toAbsolutePath());
+    }
+
+    /**
+     * 记录事件，不做任何 IO，队列已满时丢弃
+     */
+    public void record(JournalEvent event) {
+        if (!running) {
+            return;
+        }
+        if (pending.incrementAndGet() > journalProperties.getQueueCapacity()) {
+            pending.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        queue.offer(event);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", journalProperties.isEnabled());
+        stats.put("directory", journalProperties.getDirectory());
+        stats.put("written", written);
+        stats.put("writtenBytes", writtenBytes);
+        stats.put("pending", pending.get());
+        stats.put("dropped", dropped.sum());
+        stats.put("segments", segments);
+        stats.put("deletedSegments", deletedSegments);
+        return stats;
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void writeLoop() {
+        final long parkNanos = journalProperties.getFlushInterval().toNanos();
+        while (running || !queue.isEmpty()) {
+            final int batch = drain(journalProperties.getBatchSize());
+            if (batch == 0) {
+                LockSupport.parkNanos(parkNanos);
+            }
+        }
+        if (segment != null) {
+            segment.force();
+        }
+        log.info("会话日志已关闭 written:{} dropped:{}", written, dropped.sum());
+    }
+
+    private int drain(int batchSize) {
+        int count = 0;
+        JournalEvent event;
+        while (count < batchSize && (event = queue.poll()) != null) {
+            pending.decrementAndGet();
+            count++;
+            try {
+                append(event);
+            } catch (Exception e) {
+                dropped.increment();
+                log.warn("会话日志写入失败 type:{} thread:{}", event.type(), event.threadId(), e);
+            }
+        }
+        return count;
+    }
+
+    private void append(JournalEvent event) throws IOException {
+        final ByteBuffer payload = encode(event);
+        final int recordBytes = JournalCodec.RECORD_HEADER_BYTES + payload.remaining();
+        if (segment == null || segment.remaining() < recordBytes) {
+            roll(recordBytes);
+        }
+
+        // 先写内容再写长度，写入中途退出时读取方会停在这条记录之前
+        final int position = segment.position();
+        segment.position(position + JournalCodec.RECORD_HEADER_BYTES);
+        segment.put(payload);
+        segment.putInt(position, payload.limit());
+        written++;
+        writtenBytes += recordBytes;
+    }
+
+    private ByteBuffer encode(JournalEvent event) {
+        while (true) {
+            scratch.clear();
+            try {
+                JournalCodec.encode(event, scratch);
+                return scratch.flip();
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    private void roll(int recordBytes) throws IOException {
+        final long segmentBytes = journalProperties.getSegmentSize().toBytes();
+        if (recordBytes > segmentBytes - JournalCodec.FILE_HEADER_BYTES) {
+            throw new IOException("事件大小超过日志段大小: " + recordBytes);
+        }
+        if (segment != null) {
+            segment.force();
+        }
+
+        final Path file = directory.resolve(JournalCodec.segmentName(segmentSequence++));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // 映射在通道关闭后仍然有效
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        segment.putInt(JournalCodec.MAGIC);
+        segment.putInt(JournalCodec.FORMAT_VERSION);
+        segments++;
+        log.info("切换会话日志段 file:{}", file);
+        enforceRetention(file);
+    }
+
+    /**
+     * 按保留时长和总大小删除旧的日志段，当前写入的日志段不删除
+     */
+    private void enforceRetention(Path current) {
+        try {
+            final List<Path> existing = JournalCodec.segments(directory);
+            long totalBytes = 0;
+            for (Path file : existing) {
+                totalBytes += Files.size(file);
+            }
+            final long maxTotalBytes = journalProperties.getMaxTotalSize().toBytes();
+            final long expireBefore = System.currentTimeMillis() - journalProperties.getMaxAge().toMillis();
+            // 按序号从旧到新，遇到第一个不需要删除的文件即停止
+            for (Path file : existing) {
+                if (file.equals(current)) {
+                    break;
+                }
+                final boolean expired = Files.getLastModifiedTime(file).toMillis() < expireBefore;
+                if (!expired && totalBytes <= maxTotalBytes) {
+                    break;
+                }
+                final long size = Files.size(file);
+                Files.delete(file);
+                totalBytes -= size;
+                deletedSegments++;
+                log.info("删除过期会话日志段 file:{} expired:{}", file, expired);
+            }
+        } catch (IOException e) {
+            log.warn("清理会话日志段失败 directory:{}", directory, e);
+        }
+    }
+}
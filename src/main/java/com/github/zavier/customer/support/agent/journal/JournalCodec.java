@@ -0,0 +1,141 @@
+package com.github.zavier.customer.support.agent.journal;
+
+import com.github.zavier.customer.support.agent.constant.Intent;
+import com.github.zavier.customer.support.agent.constant.Urgency;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 会话日志段文件格式：文件头为魔数和版本号，之后每条记录为 4 字节长度 + 事件内容。
+ * 文件预先按段大小分配，长度为 0 表示后面没有数据
+ */
+public final class JournalCodec {
+
+    static final int MAGIC = 0x43534A4C; // CSJL
+    static final int FORMAT_VERSION = 1;
+    static final int FILE_HEADER_BYTES = 8;
+    static final int RECORD_HEADER_BYTES = 4;
+    static final String SEGMENT_PREFIX = "journal-";
+    static final String SEGMENT_SUFFIX = ".bin";
+
+    private static final int NULL_LENGTH = -1;
+    private static final int NULL_ORDINAL = 0xFF;
+
+    private JournalCodec() {
+    }
+
+    /**
+     * 编码到 buffer 当前位置，空间不足时抛出 BufferOverflowException
+     */
+    static void encode(JournalEvent event, ByteBuffer buffer) throws BufferOverflowException {
+        buffer.put((byte) event.type().ordinal());
+        buffer.putLong(event.timestamp());
+        putString(event.threadId(), buffer);
+        putString(event.name(), buffer);
+        putString(event.text(), buffer);
+        buffer.putLong(event.durationMs());
+        buffer.put((byte) (event.intent() == null ? NULL_ORDINAL : event.intent().ordinal()));
+        buffer.put((byte) (event.urgency() == null ? NULL_ORDINAL : event.urgency().ordinal()));
+    }
+
+    static JournalEvent decode(ByteBuffer buffer) {
+        final JournalEvent.Type type = JournalEvent.Type.values()[buffer.get()];
+        final long timestamp = buffer.getLong();
+        final String threadId = getString(buffer);
+        final String name = getString(buffer);
+        final String text = getString(buffer);
+        final long durationMs = buffer.getLong();
+        final int intent = Byte.toUnsignedInt(buffer.get());
+        final int urgency = Byte.toUnsignedInt(buffer.get());
+        return new JournalEvent(type, timestamp, threadId, name, text, durationMs,
+                intent == NULL_ORDINAL ? null : Intent.values()[intent],
+                urgency == NULL_ORDINAL ? null : Urgency.values()[urgency]);
+    }
+
+    /**
+     * 读取单个段文件，或目录下按序号排序的全部段文件
+     */
+    public static List<JournalEvent> read(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return readSegment(path);
+        }
+        List<JournalEvent> events = new ArrayList<>();
+        for (Path segment : segments(path)) {
+            events.addAll(readSegment(segment));
+        }
+        return events;
+    }
+
+    static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                        final String fileName = file.getFileName().toString();
+                        return fileName.startsWith(SEGMENT_PREFIX) && fileName.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted(Comparator.comparing(file -> file.getFileName().toString()))
+                    .toList();
+        }
+    }
+
+    static String segmentName(long sequence) {
+        return SEGMENT_PREFIX + String.format("%08d", sequence) + SEGMENT_SUFFIX;
+    }
+
+    private static List<JournalEvent> readSegment(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < FILE_HEADER_BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException("不是会话日志文件: " + segment);
+            }
+            final int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("不支持的会话日志版本: " + version);
+            }
+
+            List<JournalEvent> events = new ArrayList<>();
+            while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+                final int length = buffer.getInt();
+                // 未写满的段以 0 结尾，写入中途退出时可能只有部分记录
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+                final ByteBuffer record = buffer.slice(buffer.position(), length);
+                buffer.position(buffer.position() + length);
+                events.add(decode(record));
+            }
+            return events;
+        }
+    }
+
+    private static void putString(String value, ByteBuffer buffer) {
+        if (value == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
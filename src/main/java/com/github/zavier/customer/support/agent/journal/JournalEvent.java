@@ -0,0 +1,44 @@
+package com.github.zavier.customer.support.agent.journal;
+
+import com.github.zavier.customer.support.agent.MessageClassification;
+import com.github.zavier.customer.support.agent.constant.Intent;
+import com.github.zavier.customer.support.agent.constant.Urgency;
+
+/**
+ * 会话日志事件，各类型使用的字段：
+ * <ul>
+ *     <li>INPUT: name 为用户名，text 为消息内容</li>
+ *     <li>CLASSIFICATION: name 为主题，text 为总结，intent/urgency 为分类结果</li>
+ *     <li>NODE: name 为节点名称，durationMs 为节点耗时</li>
+ *     <li>DRAFT: name 为最终阶段，text 为生成的回复，durationMs 为本次执行总耗时</li>
+ *     <li>RESUME: text 为人工反馈</li>
+ * </ul>
+ */
+public record JournalEvent(Type type, long timestamp, String threadId, String name, String text,
+                           long durationMs, Intent intent, Urgency urgency) {
+
+    public enum Type {
+        INPUT, CLASSIFICATION, NODE, DRAFT, RESUME
+    }
+
+    public static JournalEvent input(String threadId, String userName, String messageContent) {
+        return new JournalEvent(Type.INPUT, System.currentTimeMillis(), threadId, userName, messageContent, 0, null, null);
+    }
+
+    public static JournalEvent classification(String threadId, MessageClassification classification) {
+        return new JournalEvent(Type.CLASSIFICATION, System.currentTimeMillis(), threadId,
+                classification.topic(), classification.summary(), 0, classification.intent(), classification.urgency());
+    }
+
+    public static JournalEvent node(String threadId, String node, long durationMs) {
+        return new JournalEvent(Type.NODE, System.currentTimeMillis(), threadId, node, null, durationMs, null, null);
+    }
+
+    public static JournalEvent draft(String threadId, String stage, String draftResponse, long elapsedMs) {
+        return new JournalEvent(Type.DRAFT, System.currentTimeMillis(), threadId, stage, draftResponse, elapsedMs, null, null);
+    }
+
+    public static JournalEvent resume(String threadId, String feedback) {
+        return new JournalEvent(Type.RESUME, System.currentTimeMillis(), threadId, null, feedback, 0, null, null);
+    }
+}
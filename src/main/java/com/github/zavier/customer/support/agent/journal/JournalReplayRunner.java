@@ -0,0 +1,51 @@
+package com.github.zavier.customer.support.agent.journal;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 离线回放入口，在预热之后执行，回放完成后退出：
+ * <pre>
+ * java -jar app.jar --replay=journal/ --replay-speed=10 --replay-concurrency=16
+ * </pre>
+ */
+@Slf4j
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class JournalReplayRunner implements ApplicationRunner {
+
+    @Resource
+    private JournalReplayer journalReplayer;
+    @Resource
+    private ApplicationContext applicationContext;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!args.containsOption("replay")) {
+            return;
+        }
+        final String path = option(args, "replay", "journal");
+        final double speed = Double.parseDouble(option(args, "replay-speed", "1"));
+        final int concurrency = Integer.parseInt(option(args, "replay-concurrency", "8"));
+
+        final Map<String, Object> report = journalReplayer.replay(Paths.get(path), speed, concurrency);
+        final int exitCode = ((Number) report.get("failures")).longValue() == 0 ? 0 : 1;
+        System.exit(SpringApplication.exit(applicationContext, () -> exitCode));
+    }
+
+    private static String option(ApplicationArguments args, String name, String defaultValue) {
+        final List<String> values = args.getOptionValues(name);
+        return values == null || values.isEmpty() ? defaultValue : values.get(0);
+    }
+}
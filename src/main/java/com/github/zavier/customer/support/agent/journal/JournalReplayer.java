@@ -0,0 +1,202 @@
+package com.github.zavier.customer.support.agent.journal;
+
+import com.github.zavier.customer.support.agent.CustomerSupportGraph;
+import com.github.zavier.customer.support.agent.llm.ModelRouter;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.bsc.langgraph4j.RunnableConfig;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按原始时间间隔把会话日志中的请求重新驱动到 CustomerSupportGraph，LLM 节点使用桩模型。
+ * 桩模型按日志中记录的节点耗时等待（与请求间隔一样按倍速缩放），还原线上的到达时间和处理时间。
+ * 同一会话的请求按顺序执行，不同会话并发执行
+ */
+@Slf4j
+@Component
+public class JournalReplayer {
+
+    @Resource
+    private CustomerSupportGraph customerSupportGraph;
+
+    /**
+     * @param speed       回放倍速，小于等于 0 表示不等待、尽快回放
+     * @param concurrency 同时执行的会话数
+     */
+    public Map<String, Object> replay(Path journal, double speed, int concurrency) throws IOException {
+        final List<Step> steps = steps(JournalCodec.read(journal));
+        log.info("开始回放会话日志 path:{} steps:{} speed:{} concurrency:{}", journal, steps.size(), speed, concurrency);
+
+        final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        final LongAdder runs = new LongAdder();
+        final LongAdder resumes = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+        final LongAdder failures = new LongAdder();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        final Map<String, CompletableFuture<Void>> tails = new HashMap<>();
+        final long start = System.nanoTime();
+        try {
+            for (Step step : steps) {
+                if (speed > 0) {
+                    waitUntil(start + TimeUnit.MILLISECONDS.toNanos((long) (step.offsetMillis() / speed)));
+                }
+                final Runnable task = () -> {
+                    final long taskStart = System.nanoTime();
+                    try {
+                        if (execute(step, speed)) {
+                            (step.type() == JournalEvent.Type.INPUT ? runs : resumes).increment();
+                            latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - taskStart));
+                        } else {
+                            skipped.increment();
+                        }
+                    } catch (Exception e) {
+                        failures.increment();
+                        log.warn("回放失败 thread:{} type:{}", step.threadId(), step.type(), e);
+                    }
+                };
+                tails.compute(step.threadId(), (threadId, tail) -> tail == null
+                        ? CompletableFuture.runAsync(task, executor)
+                        : tail.thenRunAsync(task, executor));
+            }
+            CompletableFuture.allOf(tails.values().toArray(new CompletableFuture[0])).join();
+        } finally {
+            executor.shutdownNow();
+            // 回放会话的检查点不再使用，全部释放
+            tails.keySet().forEach(threadId -> customerSupportGraph.release(replayThreadId(threadId)));
+        }
+        final long wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        final List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("steps", steps.size());
+        report.put("runs", runs.sum());
+        report.put("resumes", resumes.sum());
+        report.put("skipped", skipped.sum());
+        report.put("failures", failures.sum());
+        report.put("wallMillis", wallMillis);
+        report.put("throughputPerSecond", wallMillis == 0 ? 0 : sorted.size() * 1000.0 / wallMillis);
+        report.put("p50Millis", percentile(sorted, 0.50));
+        report.put("p95Millis", percentile(sorted, 0.95));
+        report.put("p99Millis", percentile(sorted, 0.99));
+        report.put("maxMillis", sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1));
+        log.info("会话日志回放完成 {}", report);
+        return report;
+    }
+
+    private boolean execute(Step step, double speed) {
+        // 倍速小于等于 0 时尽快回放，模型调用也不等待
+        final Map<String, Long> nodeLatencyMillis = new HashMap<>();
+        if (speed > 0) {
+            step.nodeLatencyMillis().forEach((node, millis) -> nodeLatencyMillis.put(node, (long) (millis / speed)));
+        }
+        final RunnableConfig config = ModelRouter.withStubModel(RunnableConfig.builder()
+                .threadId(replayThreadId(step.threadId()))
+                .build(), nodeLatencyMillis);
+        if (step.type() == JournalEvent.Type.INPUT) {
+            customerSupportGraph.run(Map.of(
+                    "messageContent", step.content(),
+                    "userName", step.userName()), config);
+            return true;
+        }
+        // 桩模型的分类与线上可能不同，没有中断的会话跳过人工反馈
+        if (!customerSupportGraph.isInterrupt(config)) {
+            return false;
+        }
+        customerSupportGraph.resume(config, step.content());
+        return true;
+    }
+
+    private static String replayThreadId(String threadId) {
+        return "replay-" + threadId;
+    }
+
+    /**
+     * 把用户输入和人工反馈转换为回放步骤，记录到的分类结果以标记形式附加到消息中，让桩模型给出相同的分类；
+     * 请求之后同一会话的 NODE 事件作为该步骤各节点的耗时
+     */
+    private static List<Step> steps(List<JournalEvent> events) {
+        final Map<Integer, JournalEvent> classifications = new HashMap<>();
+        final Map<Integer, Map<String, Long>> nodeLatencies = new HashMap<>();
+        final Map<String, Integer> lastInput = new HashMap<>();
+        final Map<String, Integer> lastRequest = new HashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            final JournalEvent event = events.get(i);
+            if (event.type() == JournalEvent.Type.INPUT || event.type() == JournalEvent.Type.RESUME) {
+                lastRequest.put(event.threadId(), i);
+            }
+            if (event.type() == JournalEvent.Type.NODE) {
+                final Integer request = lastRequest.get(event.threadId());
+                if (request != null && event.name() != null) {
+                    nodeLatencies.computeIfAbsent(request, key -> new HashMap<>()).put(event.name(), event.durationMs());
+                }
+            } else if (event.type() == JournalEvent.Type.INPUT) {
+                lastInput.put(event.threadId(), i);
+            } else if (event.type() == JournalEvent.Type.CLASSIFICATION) {
+                final Integer input = lastInput.remove(event.threadId());
+                if (input != null) {
+                    classifications.put(input, event);
+                }
+            }
+        }
+
+        List<Step> steps = new ArrayList<>();
+        long firstTimestamp = -1;
+        for (int i = 0; i < events.size(); i++) {
+            final JournalEvent event = events.get(i);
+            if (event.type() != JournalEvent.Type.INPUT && event.type() != JournalEvent.Type.RESUME) {
+                continue;
+            }
+            if (firstTimestamp < 0) {
+                firstTimestamp = event.timestamp();
+            }
+            String content = event.text() == null ? "" : event.text();
+            final JournalEvent classification = classifications.get(i);
+            if (classification != null && classification.intent() != null && classification.urgency() != null) {
+                content = content + " #intent=" + classification.intent() + " #urgency=" + classification.urgency();
+            }
+            steps.add(new Step(event.timestamp() - firstTimestamp, event.threadId(), event.type(),
+                    content, event.name() == null ? "" : event.name(), nodeLatencies.getOrDefault(i, Map.of())));
+        }
+        return steps;
+    }
+
+    private static void waitUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        final int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+
+    private record Step(long offsetMillis, String threadId, JournalEvent.Type type, String content, String userName,
+                        Map<String, Long> nodeLatencyMillis) {
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.zavier.customer.support.agent.llm;
+
+import com.github.zavier.customer.support.config.LlmProperties;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestClient;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按 base-url 复用 HttpClient（连接池），为每个模型配置创建独立的 OpenAiChatModel
+ */
+@Slf4j
+@Component
+public class ChatModelFactory {
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+    @Resource
+    private LlmProperties llmProperties;
+
+    @Value("${spring.ai.openai.base-url}")
+    private String defaultBaseUrl;
+    @Value("${spring.ai.openai.api-key}")
+    private String defaultApiKey;
+
+    private final Map<String, HttpClient> httpClients = new ConcurrentHashMap<>();
+    private volatile List<LlmEndpoint> backupEndpoints;
+
+    public OpenAiChatModel create(String baseUrl, String apiKey, OpenAiChatOptions options, Duration timeout) {
+        final String resolvedBaseUrl = StringUtils.hasText(baseUrl) ? baseUrl : defaultBaseUrl;
+        final String resolvedApiKey = StringUtils.hasText(apiKey) ? apiKey : defaultApiKey;
+
+        final JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient(resolvedBaseUrl));
+        if (timeout != null) {
+            requestFactory.setReadTimeout(timeout);
+        }
+
+        final OpenAiApi openAiApi = OpenAiApi.builder()
+                .baseUrl(resolvedBaseUrl)
+                .apiKey(resolvedApiKey)
+                .restClientBuilder(RestClient.builder().requestFactory(requestFactory))
+                .build();
+        return OpenAiChatModel.builder()
+                .openAiApi(openAiApi)
+                .defaultOptions(options)
+                // 失败由对冲/故障转移处理，这里不再重试
+                .retryTemplate(RetryTemplate.builder().maxAttempts(1).build())
+                .build();
+    }
+
+    /**
+     * customer-support.llm.endpoints 配置的备用端点，所有模型配置共享同一组健康状态
+     */
+    public List<LlmEndpoint> backupEndpoints(OpenAiChatOptions defaultOptions) {
+        List<LlmEndpoint> endpoints = backupEndpoints;
+        if (endpoints == null) {
+            synchronized (this) {
+                endpoints = backupEndpoints;
+                if (endpoints == null) {
+                    endpoints = new ArrayList<>();
+                    for (LlmProperties.Endpoint endpoint : llmProperties.getEndpoints()) {
+                        // 沿用默认端点的模型参数，端点配置了模型时在请求时替换
+                        final OpenAiChatModel chatModel = create(endpoint.getBaseUrl(), endpoint.getApiKey(),
+                                OpenAiChatOptions.fromOptions(defaultOptions), null);
+                        endpoints.add(new LlmEndpoint(endpoint.getName(), chatModel, endpoint.getModel()));
+                    }
+                    backupEndpoints = List.copyOf(endpoints);
+                }
+            }
+        }
+        return endpoints;
+    }
+
+    /**
+     * 预先与各 base-url 建立连接（TLS 握手、连接池），返回成功建立连接的数量
+     */
+    public int warmConnections(Duration timeout) {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        httpClients.forEach((baseUrl, httpClient) -> {
+            final HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/models"))
+                    .timeout(timeout)
+                    .GET()
+                    .build();
+            // 不关心响应内容，未授权的响应同样完成了连接建立
+            futures.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> {
+                        if (error != null) {
+                            log.warn("预建连接失败 baseUrl:{} error:{}", baseUrl, error.toString());
+                            return false;
+                        }
+                        return true;
+                    }));
+        });
+        return (int) futures.stream().map(CompletableFuture::join).filter(Boolean::booleanValue).count();
+    }
+
+    private HttpClient httpClient(String baseUrl) {
+        return httpClients.computeIfAbsent(baseUrl, url -> HttpClient.newBuilder()
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build());
+    }
+}
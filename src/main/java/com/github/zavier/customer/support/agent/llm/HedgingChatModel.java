@@ -0,0 +1,289 @@
+package com.github.zavier.customer.support.agent.llm;
+
+import com.github.zavier.customer.support.agent.usage.TokenUsageAdvisor;
+import com.github.zavier.customer.support.config.LlmProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.util.Assert;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 在多个 OpenAI 兼容端点之间做对冲请求的 ChatModel
+ * <p>
+ * 主端点耗时超过其延迟分位数后，在对冲预算允许的情况下向下一个健康端点再发一次请求，
+ * 取先返回的结果；落败的请求不取消（请求已发出，服务端通常照常生成并计费），完成后按同一节点/会话/租户记录其 token 用量。
+ * 主端点直接失败时转移到下一个端点。
+ * 请求在共享的有界线程池中执行，线程池已满时退化为在调用线程上直接请求，不再对冲。
+ */
+@Slf4j
+public class HedgingChatModel implements ChatModel {
+
+    // 对冲额度以千分之一为单位累计，避免浮点并发更新
+    private static final long CREDIT_SCALE = 1000;
+    private static final long MAX_CREDITS = 10 * CREDIT_SCALE;
+
+    private final List<LlmEndpoint> endpoints;
+    private final LlmProperties.Hedge hedge;
+    private final ExecutorService executor;
+
+    private final AtomicLong hedgeCredits = new AtomicLong(CREDIT_SCALE);
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedgesIssued = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder failovers = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder loserResponses = new LongAdder();
+
+    public HedgingChatModel(List<LlmEndpoint> endpoints, LlmProperties.Hedge hedge, ExecutorService executor) {
+        Assert.notEmpty(endpoints, "endpoints cannot be empty");
+        Assert.notNull(hedge, "hedge cannot be null");
+        Assert.notNull(executor, "executor cannot be null");
+        this.endpoints = List.copyOf(endpoints);
+        this.hedge = hedge;
+        this.executor = executor;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        requests.increment();
+        final LlmEndpoint primary = pickPrimary();
+        final LlmEndpoint alternate = pickAlternate(primary);
+
+        // 未开启对冲或没有备用端点时直接在调用线程上执行
+        if (!hedge.isEnabled() || alternate == null) {
+            return callDirectly(primary, prompt);
+        }
+        depositHedgeCredit();
+
+        final Attempt first = submit(primary, prompt);
+        if (first == null) {
+            return callDirectly(primary, prompt);
+        }
+        try {
+            return first.result.get(hedgeDelayMillis(primary), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 超过延迟阈值，进入对冲逻辑
+        } catch (ExecutionException e) {
+            log.warn("LLM端点 {} 调用失败，转移到 {}", primary.name(), alternate.name(), e.getCause());
+            failovers.increment();
+            final Attempt failover = submit(alternate, prompt);
+            return failover == null ? callDirectly(alternate, prompt) : await(failover.result);
+        } catch (InterruptedException e) {
+            first.cancel();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("LLM 调用被中断", e);
+        }
+
+        if (!tryAcquireHedgeCredit()) {
+            return await(first.result, first);
+        }
+
+        final Attempt second = submit(alternate, prompt);
+        if (second == null) {
+            return await(first.result, first);
+        }
+        hedgesIssued.increment();
+        log.info("LLM端点 {} 响应过慢，向 {} 发起对冲请求", primary.name(), alternate.name());
+        final TokenUsageAdvisor.Attribution attribution = TokenUsageAdvisor.current();
+        final ChatResponse response = awaitHedged(firstSuccessful(first, second), first, second);
+        final boolean primaryWon = first.result.isDone() && !first.result.isCompletedExceptionally()
+                && first.result.join() == response;
+        if (primaryWon) {
+            primary.recordHedgeWin();
+        } else {
+            alternate.recordHedgeWin();
+            hedgeWins.increment();
+        }
+        // 胜出的响应由 TokenUsageAdvisor 记录，落败的请求完成后单独记录
+        final Attempt loser = primaryWon ? second : first;
+        loser.result.thenAccept(loserResponse -> {
+            loserResponses.increment();
+            if (attribution != null) {
+                attribution.record(loserResponse);
+            }
+        });
+        return response;
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return endpoints.get(0).chatModel().getDefaultOptions();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> endpointStats = new LinkedHashMap<>();
+        endpoints.forEach(endpoint -> endpointStats.put(endpoint.name(), endpoint.stats(hedge.getPercentile())));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hedgeEnabled", hedge.isEnabled());
+        stats.put("requests", requests.sum());
+        stats.put("hedgesIssued", hedgesIssued.sum());
+        stats.put("hedgeWins", hedgeWins.sum());
+        stats.put("failovers", failovers.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("loserResponses", loserResponses.sum());
+        stats.put("endpoints", endpointStats);
+        return stats;
+    }
+
+    private ChatResponse callDirectly(LlmEndpoint endpoint, Prompt prompt) {
+        final long start = System.nanoTime();
+        try {
+            final ChatResponse response = endpoint.chatModel().call(endpoint.prepare(prompt));
+            endpoint.recordSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return response;
+        } catch (RuntimeException e) {
+            endpoint.recordFailure(hedge.getFailureThreshold(), hedge.getUnhealthyCooldown());
+            throw e;
+        }
+    }
+
+    private LlmEndpoint pickPrimary() {
+        return endpoints.stream()
+                .filter(LlmEndpoint::isHealthy)
+                .findFirst()
+                // 全部不健康时仍然尝试第一个端点
+                .orElse(endpoints.get(0));
+    }
+
+    private LlmEndpoint pickAlternate(LlmEndpoint primary) {
+        return endpoints.stream()
+                .filter(endpoint -> endpoint != primary)
+                .filter(LlmEndpoint::isHealthy)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private long hedgeDelayMillis(LlmEndpoint endpoint) {
+        final long minDelay = hedge.getMinDelay().toMillis();
+        return Math.max(minDelay, endpoint.latencyPercentile(hedge.getPercentile()));
+    }
+
+    private void depositHedgeCredit() {
+        final long deposit = (long) (hedge.getBudgetRatio() * CREDIT_SCALE);
+        hedgeCredits.accumulateAndGet(deposit, (current, delta) -> Math.min(MAX_CREDITS, current + delta));
+    }
+
+    private boolean tryAcquireHedgeCredit() {
+        while (true) {
+            final long current = hedgeCredits.get();
+            if (current < CREDIT_SCALE) {
+                return false;
+            }
+            if (hedgeCredits.compareAndSet(current, current - CREDIT_SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 线程池已满时返回 null，由调用方退化处理
+     */
+    private Attempt submit(LlmEndpoint endpoint, Prompt prompt) {
+        final Attempt attempt = new Attempt();
+        try {
+            attempt.task = executor.submit(() -> runAttempt(endpoint, prompt, attempt));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return null;
+        }
+        return attempt;
+    }
+
+    private void runAttempt(LlmEndpoint endpoint, Prompt prompt, Attempt attempt) {
+        final long start = System.nanoTime();
+        try {
+            final ChatResponse response = endpoint.chatModel().call(endpoint.prepare(prompt));
+            endpoint.recordSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            attempt.result.complete(response);
+        } catch (Throwable e) {
+            // 被取消的请求不计入端点失败
+            if (!attempt.cancelled) {
+                endpoint.recordFailure(hedge.getFailureThreshold(), hedge.getUnhealthyCooldown());
+            }
+            attempt.result.completeExceptionally(e);
+        }
+    }
+
+    private static CompletableFuture<ChatResponse> firstSuccessful(Attempt... attempts) {
+        final CompletableFuture<ChatResponse> result = new CompletableFuture<>();
+        final AtomicInteger remaining = new AtomicInteger(attempts.length);
+        for (Attempt attempt : attempts) {
+            attempt.result.whenComplete((response, error) -> {
+                if (error == null) {
+                    result.complete(response);
+                } else if (remaining.decrementAndGet() == 0) {
+                    result.completeExceptionally(error);
+                }
+            });
+        }
+        return result;
+    }
+
+    private static ChatResponse await(CompletableFuture<ChatResponse> future, Attempt... toCancel) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("LLM 调用异常", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("LLM 调用被中断", e);
+        } finally {
+            for (Attempt attempt : toCancel) {
+                attempt.cancel();
+            }
+        }
+    }
+
+    /**
+     * 正常返回时不取消落败的请求，只有等待被中断时取消全部请求
+     */
+    private static ChatResponse awaitHedged(CompletableFuture<ChatResponse> future, Attempt... attempts) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("LLM 调用异常", cause);
+        } catch (InterruptedException e) {
+            for (Attempt attempt : attempts) {
+                attempt.cancel();
+            }
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("LLM 调用被中断", e);
+        }
+    }
+
+    private static class Attempt {
+        private final CompletableFuture<ChatResponse> result = new CompletableFuture<>();
+        private volatile Future<?> task;
+        private volatile boolean cancelled;
+
+        void cancel() {
+            if (result.isDone()) {
+                return;
+            }
+            cancelled = true;
+            final Future<?> current = task;
+            if (current != null) {
+                current.cancel(true);
+            }
+        }
+    }
+}
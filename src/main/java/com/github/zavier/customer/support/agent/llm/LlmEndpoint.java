@@ -0,0 +1,136 @@
+package com.github.zavier.customer.support.agent.llm;
+
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个 OpenAI 兼容端点，记录最近的延迟样本和健康状态
+ */
+public class LlmEndpoint {
+
+    private static final int WINDOW_SIZE = 256;
+    private static final int RECOMPUTE_INTERVAL = 32;
+
+    private final String name;
+    private final ChatModel chatModel;
+    private final String model;
+
+    // 环形缓冲区保存最近的成功延迟（毫秒）
+    private final AtomicLongArray latencies = new AtomicLongArray(WINDOW_SIZE);
+    private final AtomicLong sampleCount = new AtomicLong();
+    private volatile long cachedPercentileMillis = -1;
+    private volatile double cachedPercentile = -1;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long unhealthyUntil;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    public LlmEndpoint(String name, ChatModel chatModel, String model) {
+        this.name = name;
+        this.chatModel = chatModel;
+        this.model = model;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public ChatModel chatModel() {
+        return chatModel;
+    }
+
+    /**
+     * 端点配置了自己的模型名时，替换请求中的模型
+     */
+    public Prompt prepare(Prompt prompt) {
+        if (!StringUtils.hasText(model)) {
+            return prompt;
+        }
+        final ChatOptions options = prompt.getOptions();
+        final OpenAiChatOptions endpointOptions = options instanceof OpenAiChatOptions openAiOptions
+                ? OpenAiChatOptions.fromOptions(openAiOptions)
+                : new OpenAiChatOptions();
+        endpointOptions.setModel(model);
+        return new Prompt(prompt.getInstructions(), endpointOptions);
+    }
+
+    public boolean isHealthy() {
+        return System.currentTimeMillis() >= unhealthyUntil;
+    }
+
+    public void recordSuccess(long latencyMillis) {
+        calls.increment();
+        consecutiveFailures.set(0);
+        final long n = sampleCount.getAndIncrement();
+        latencies.set((int) (n % WINDOW_SIZE), latencyMillis);
+        if (n % RECOMPUTE_INTERVAL == 0) {
+            // 样本变化后让缓存的分位数失效
+            cachedPercentile = -1;
+        }
+    }
+
+    public void recordFailure(int failureThreshold, Duration cooldown) {
+        calls.increment();
+        failures.increment();
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            unhealthyUntil = System.currentTimeMillis() + cooldown.toMillis();
+            consecutiveFailures.set(0);
+        }
+    }
+
+    /**
+     * 对冲竞争中本端点先返回
+     */
+    public void recordHedgeWin() {
+        hedgeWins.increment();
+    }
+
+    /**
+     * 最近延迟的指定分位数，样本不足时返回 -1
+     */
+    public long latencyPercentile(double percentile) {
+        if (cachedPercentile == percentile) {
+            return cachedPercentileMillis;
+        }
+        final int size = (int) Math.min(sampleCount.get(), WINDOW_SIZE);
+        if (size < RECOMPUTE_INTERVAL) {
+            return -1;
+        }
+        final long[] samples = new long[size];
+        for (int i = 0; i < size; i++) {
+            samples[i] = latencies.get(i);
+        }
+        Arrays.sort(samples);
+        final int index = Math.min(size - 1, (int) Math.ceil(percentile * size) - 1);
+        final long value = samples[Math.max(0, index)];
+        cachedPercentileMillis = value;
+        cachedPercentile = percentile;
+        return value;
+    }
+
+    public Map<String, Object> stats(double percentile) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("model", model);
+        stats.put("healthy", isHealthy());
+        stats.put("calls", calls.sum());
+        stats.put("failures", failures.sum());
+        stats.put("hedgeWins", hedgeWins.sum());
+        stats.put("latencyPercentileMillis", latencyPercentile(percentile));
+        return stats;
+    }
+}
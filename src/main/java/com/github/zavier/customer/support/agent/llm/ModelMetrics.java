@@ -0,0 +1,66 @@
+package com.github.zavier.customer.support.agent.llm;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按 节点/模型配置/模型 维度统计 LLM 调用次数、失败次数和耗时
+ */
+@Component
+public class ModelMetrics {
+
+    private final Map<Key, Stat> stats = new ConcurrentHashMap<>();
+
+    public void recordSuccess(String node, String profile, String model, long latencyMillis) {
+        stat(node, profile, model).record(latencyMillis, false);
+    }
+
+    public void recordFailure(String node, String profile, String model, long latencyMillis) {
+        stat(node, profile, model).record(latencyMillis, true);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new TreeMap<>();
+        stats.forEach((key, stat) -> result.put(key.node() + "/" + key.profile() + "/" + key.model(), stat.toMap()));
+        return result;
+    }
+
+    private Stat stat(String node, String profile, String model) {
+        return stats.computeIfAbsent(new Key(node, profile, model == null ? "unknown" : model), key -> new Stat());
+    }
+
+    private record Key(String node, String profile, String model) {
+    }
+
+    private static class Stat {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalLatencyMillis = new LongAdder();
+        private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+        void record(long latencyMillis, boolean failed) {
+            calls.increment();
+            if (failed) {
+                failures.increment();
+            }
+            totalLatencyMillis.add(latencyMillis);
+            maxLatencyMillis.accumulateAndGet(latencyMillis, Math::max);
+        }
+
+        Map<String, Object> toMap() {
+            final long count = calls.sum();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("calls", count);
+            map.put("failures", failures.sum());
+            map.put("avgLatencyMillis", count == 0 ? 0 : totalLatencyMillis.sum() / count);
+            map.put("maxLatencyMillis", maxLatencyMillis.get());
+            return map;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.zavier.customer.support.agent.llm;
+
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.core.Ordered;
+import org.springframework.util.StringUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录每次调用的耗时，模型名优先取响应中返回的实际模型
+ */
+public class ModelMetricsAdvisor implements CallAdvisor {
+
+    private final String node;
+    private final String profile;
+    private final String configuredModel;
+    private final ModelMetrics modelMetrics;
+
+    public ModelMetricsAdvisor(String node, String profile, String configuredModel, ModelMetrics modelMetrics) {
+        this.node = node;
+        this.profile = profile;
+        this.configuredModel = configuredModel;
+        this.modelMetrics = modelMetrics;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        final long start = System.nanoTime();
+        try {
+            final ChatClientResponse response = callAdvisorChain.nextCall(chatClientRequest);
+            modelMetrics.recordSuccess(node, profile, responseModel(response), elapsedMillis(start));
+            return response;
+        } catch (RuntimeException e) {
+            modelMetrics.recordFailure(node, profile, configuredModel, elapsedMillis(start));
+            throw e;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "ModelMetricsAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    private String responseModel(ChatClientResponse response) {
+        final ChatResponse chatResponse = response.chatResponse();
+        if (chatResponse != null && StringUtils.hasText(chatResponse.getMetadata().getModel())) {
+            return chatResponse.getMetadata().getModel();
+        }
+        return configuredModel;
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
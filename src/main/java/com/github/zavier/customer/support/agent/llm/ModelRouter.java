@@ -0,0 +1,246 @@
+package com.github.zavier.customer.support.agent.llm;
+
+import com.github.zavier.customer.support.agent.MessageAgentState;
+import com.github.zavier.customer.support.agent.MessageClassification;
+import com.github.zavier.customer.support.agent.usage.TokenBudget;
+import com.github.zavier.customer.support.agent.usage.TokenBudgetExceededException;
+import com.github.zavier.customer.support.agent.usage.TokenUsageAdvisor;
+import com.github.zavier.customer.support.agent.usage.TokenUsageMeter;
+import com.github.zavier.customer.support.config.LlmProperties;
+import com.github.zavier.customer.support.config.TokenBudgetProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.bsc.langgraph4j.RunnableConfig;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 根据节点和分类结果选择模型配置，每个 节点/模型配置 组合持有独立的 ChatClient
+ */
+@Slf4j
+@Component
+public class ModelRouter {
+
+    public static final String DEFAULT_PROFILE = "default";
+    public static final String STUB_PROFILE = "stub";
+    // RunnableConfig metadata 中带有该 key 时使用本地桩模型
+    public static final String STUB_METADATA_KEY = "stubModel";
+    // 桩模型调用按节点等待的耗时（毫秒），值为节点名称到耗时的 Map
+    public static final String STUB_LATENCY_METADATA_KEY = "stubModelLatencyMillis";
+
+    @Resource
+    private LlmProperties llmProperties;
+    @Resource
+    private ChatModelFactory chatModelFactory;
+    @Resource
+    private HedgingChatModel defaultChatModel;
+    @Resource
+    private ExecutorService llmHedgeExecutor;
+    @Resource
+    private ModelMetrics modelMetrics;
+    @Resource
+    private TokenUsageMeter tokenUsageMeter;
+    @Resource
+    private TokenBudget tokenBudget;
+    @Resource
+    private TokenBudgetProperties tokenBudgetProperties;
+
+    private final Map<String, HedgingChatModel> profileModels = new LinkedHashMap<>();
+    private final Map<String, ChatClient> chatClients = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        llmProperties.getNodes().forEach((node, profile) -> checkProfile(profile, "节点 " + node));
+        llmProperties.getRoutes().forEach(route -> checkProfile(route.getProfile(), "路由规则 " + route.getNode()));
+        checkProfile(tokenBudgetProperties.getDowngradeProfile(), "token 预算降级");
+
+        final OpenAiChatOptions defaultOptions = (OpenAiChatOptions) defaultChatModel.getDefaultOptions();
+        llmProperties.getProfiles().forEach((name, profile) -> {
+            final OpenAiChatOptions options = options(profile);
+            final OpenAiChatModel chatModel = chatModelFactory.create(profile.getBaseUrl(), profile.getApiKey(),
+                    options, profile.getTimeout());
+
+            List<LlmEndpoint> endpoints = new ArrayList<>();
+            endpoints.add(new LlmEndpoint(name, chatModel, null));
+            endpoints.addAll(chatModelFactory.backupEndpoints(defaultOptions));
+            profileModels.put(name, new HedgingChatModel(endpoints, llmProperties.getHedge(), llmHedgeExecutor));
+            log.info("加载模型配置 {}: model={}, timeout={}", name, profile.getModel(), profile.getTimeout());
+        });
+    }
+
+    /**
+     * 路由规则优先，其次是节点默认配置，都没有时使用默认模型
+     */
+    public String resolveProfile(String node, MessageAgentState state) {
+        final Optional<MessageClassification> classification = state.classification();
+        for (LlmProperties.Route route : llmProperties.getRoutes()) {
+            if (!node.equals(route.getNode())) {
+                continue;
+            }
+            final boolean intentMatched = route.getIntents().isEmpty()
+                    || classification.map(c -> route.getIntents().contains(c.intent())).orElse(false);
+            final boolean urgencyMatched = route.getUrgencies().isEmpty()
+                    || classification.map(c -> route.getUrgencies().contains(c.urgency())).orElse(false);
+            if (intentMatched && urgencyMatched) {
+                return route.getProfile();
+            }
+        }
+        return llmProperties.getNodes().getOrDefault(node, DEFAULT_PROFILE);
+    }
+
+    public ChatClient chatClient(String node, MessageAgentState state, RunnableConfig config) {
+        if (isStub(config)) {
+            final long latencyMillis = stubLatencyMillis(config, node);
+            if (latencyMillis > 0) {
+                // 带耗时的桩模型只用于本次执行，不缓存
+                return ChatClient.builder(new StubChatModel(node, latencyMillis)).build();
+            }
+            // 桩模型按节点决定回复内容
+            return chatClients.computeIfAbsent(node + "/" + STUB_PROFILE,
+                    key -> ChatClient.builder(new StubChatModel(node)).build());
+        }
+        final String profile = resolveProfile(node, state);
+        return chatClients.computeIfAbsent(node + "/" + profile, key -> buildChatClient(node, profile));
+    }
+
+    /**
+     * 按 token 预算选择模型并创建请求：超过一定比例后限制回复长度、改用小模型，预算耗尽时抛出异常由节点降级为固定回复。
+     * 请求带上会话和租户，用于统计 token 用量
+     */
+    public ChatClient.ChatClientRequestSpec prompt(String node, MessageAgentState state, RunnableConfig config, String prompt) {
+        // 没有 threadId 的执行不计入会话预算，避免共用同一个会话用量
+        final String sessionId = config.threadId().orElse(null);
+        final String tenant = tokenBudget.tenantOf(state.userName());
+        final TokenBudget.Level level = isStub(config) ? TokenBudget.Level.NORMAL : tokenBudget.check(sessionId, tenant);
+        if (level == TokenBudget.Level.EXHAUSTED) {
+            throw new TokenBudgetExceededException("token 预算已用完 session:" + sessionId + " tenant:" + tenant);
+        }
+
+        final String profile = level == TokenBudget.Level.DOWNGRADED
+                ? tokenBudgetProperties.getDowngradeProfile()
+                : resolveProfile(node, state);
+        final ChatClient chatClient = level == TokenBudget.Level.DOWNGRADED
+                ? chatClients.computeIfAbsent(node + "/" + profile, key -> buildChatClient(node, profile))
+                : chatClient(node, state, config);
+
+        final ChatClient.ChatClientRequestSpec spec = chatClient.prompt(prompt)
+                .advisors(advisor -> {
+                    advisor.param(TokenUsageAdvisor.TENANT_PARAM, tenant);
+                    if (sessionId != null) {
+                        advisor.param(TokenUsageAdvisor.SESSION_PARAM, sessionId);
+                    }
+                });
+        if (level != TokenBudget.Level.NORMAL) {
+            // 请求级参数会替换 ChatClient 的默认参数，需要带上完整的模型配置
+            final OpenAiChatOptions options = profileOptions(profile);
+            final Integer maxTokens = options.getMaxTokens();
+            options.setMaxTokens(maxTokens == null
+                    ? tokenBudgetProperties.getReducedMaxTokens()
+                    : Math.min(maxTokens, tokenBudgetProperties.getReducedMaxTokens()));
+            spec.options(options);
+        }
+        return spec;
+    }
+
+    /**
+     * 不属于单个会话的请求（如批量分类），使用节点默认的模型配置，回复长度由调用方按请求内容决定
+     */
+    public ChatClient.ChatClientRequestSpec prompt(String node, String prompt, int maxTokens) {
+        final String profile = llmProperties.getNodes().getOrDefault(node, DEFAULT_PROFILE);
+        // 请求级参数会替换 ChatClient 的默认参数，需要带上完整的模型配置
+        final OpenAiChatOptions options = profileOptions(profile);
+        options.setMaxTokens(maxTokens);
+        return chatClients.computeIfAbsent(node + "/" + profile, key -> buildChatClient(node, profile))
+                .prompt(prompt)
+                .options(options);
+    }
+
+    /**
+     * 让本次执行的 LLM 节点使用本地桩模型，用于预热和回放
+     */
+    public static RunnableConfig withStubModel(RunnableConfig config) {
+        return RunnableConfig.builder(config)
+                .addMetadata(STUB_METADATA_KEY, Boolean.TRUE)
+                .build();
+    }
+
+    /**
+     * 使用桩模型，并让各节点的模型调用等待指定的耗时，用于按线上耗时回放，key 为节点名称
+     */
+    public static RunnableConfig withStubModel(RunnableConfig config, Map<String, Long> nodeLatencyMillis) {
+        return RunnableConfig.builder(withStubModel(config))
+                .addMetadata(STUB_LATENCY_METADATA_KEY, Map.copyOf(nodeLatencyMillis))
+                .build();
+    }
+
+    /**
+     * 桩模型执行（预热、回放）不应产生业务副作用
+     */
+    public static boolean isStub(RunnableConfig config) {
+        return config.metadata(STUB_METADATA_KEY).isPresent();
+    }
+
+    private static long stubLatencyMillis(RunnableConfig config, String node) {
+        return config.metadata(STUB_LATENCY_METADATA_KEY)
+                .filter(Map.class::isInstance)
+                .map(latencies -> ((Map<?, ?>) latencies).get(node))
+                .filter(Long.class::isInstance)
+                .map(Long.class::cast)
+                .orElse(0L);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put(DEFAULT_PROFILE, defaultChatModel.stats());
+        profileModels.forEach((name, model) -> stats.put(name, model.stats()));
+        return stats;
+    }
+
+    private ChatClient buildChatClient(String node, String profileName) {
+        final LlmProperties.Profile profile = llmProperties.getProfiles().get(profileName);
+        final ChatModel chatModel = profile == null ? defaultChatModel : profileModels.get(profileName);
+        final String configuredModel = profile == null ? defaultChatModel.getDefaultOptions().getModel() : profile.getModel();
+
+        final ChatClient.Builder builder = ChatClient.builder(chatModel)
+                .defaultAdvisors(new ModelMetricsAdvisor(node, profileName, configuredModel, modelMetrics),
+                        new TokenUsageAdvisor(node, configuredModel, tokenUsageMeter));
+        if (profile != null) {
+            // 请求中带上模型参数，对冲到备用端点时同样生效
+            builder.defaultOptions(options(profile));
+        }
+        return builder.build();
+    }
+
+    private void checkProfile(String profile, String source) {
+        if (!DEFAULT_PROFILE.equals(profile) && !llmProperties.getProfiles().containsKey(profile)) {
+            throw new IllegalStateException(source + " 引用了不存在的模型配置: " + profile);
+        }
+    }
+
+    private OpenAiChatOptions profileOptions(String profileName) {
+        final LlmProperties.Profile profile = llmProperties.getProfiles().get(profileName);
+        return profile == null
+                ? OpenAiChatOptions.fromOptions((OpenAiChatOptions) defaultChatModel.getDefaultOptions())
+                : options(profile);
+    }
+
+    private OpenAiChatOptions options(LlmProperties.Profile profile) {
+        final String model = StringUtils.hasText(profile.getModel())
+                ? profile.getModel()
+                : defaultChatModel.getDefaultOptions().getModel();
+        return OpenAiChatOptions.builder()
+                .model(model)
+                .temperature(profile.getTemperature())
+                .maxTokens(profile.getMaxTokens())
+                .build();
+    }
+}
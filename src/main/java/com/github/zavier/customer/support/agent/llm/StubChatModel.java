@@ -0,0 +1,69 @@
+package com.github.zavier.customer.support.agent.llm;
+
+import com.github.zavier.customer.support.agent.constant.Intent;
+import com.github.zavier.customer.support.agent.constant.Urgency;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地桩模型，不访问网络，用于预热和回放，每个节点使用独立的实例
+ * <p>
+ * 分类节点返回分类 JSON，意图和紧急程度可在消息中用 #intent=BUG #urgency=HIGH 指定；
+ * 其他节点返回固定回复。指定耗时时先等待该时间再返回，用于按线上耗时回放
+ */
+public class StubChatModel implements ChatModel {
+
+    public static final String CLASSIFY_NODE = "classifyIntent";
+
+    private static final Pattern INTENT = Pattern.compile("#intent=(\\w+)");
+    private static final Pattern URGENCY = Pattern.compile("#urgency=(\\w+)");
+
+    private final String node;
+    private final long latencyMillis;
+
+    public StubChatModel(String node) {
+        this(node, 0);
+    }
+
+    public StubChatModel(String node, long latencyMillis) {
+        this.node = node;
+        this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        if (latencyMillis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        final String contents = prompt.getContents();
+        final String text = CLASSIFY_NODE.equals(node)
+                ? classificationJson(contents)
+                : "您好，这是一条用于预热和回放的固定回复。";
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static String classificationJson(String contents) {
+        final String intent = match(INTENT, contents, Intent.QUESTION.name());
+        final String urgency = match(URGENCY, contents, Urgency.LOW.name());
+        return """
+                {"intent": "%s", "urgency": "%s", "topic": "stub", "summary": "stub classification"}
+                """.formatted(intent, urgency);
+    }
+
+    private static String match(Pattern pattern, String contents, String defaultValue) {
+        final Matcher matcher = pattern.matcher(contents);
+        return matcher.find() ? matcher.group(1) : defaultValue;
+    }
+}
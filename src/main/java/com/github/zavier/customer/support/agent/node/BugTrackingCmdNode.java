@@ -1,25 +1,65 @@
 package com.github.zavier.customer.support.agent.node;
 
 import com.github.zavier.customer.support.agent.MessageAgentState;
+import com.github.zavier.customer.support.agent.MessageClassification;
+import com.github.zavier.customer.support.agent.bug.BugTicket;
+import com.github.zavier.customer.support.agent.bug.BugTicketStore;
+import com.github.zavier.customer.support.agent.llm.ModelRouter;
+import jakarta.annotation.Resource;
 import org.bsc.langgraph4j.RunnableConfig;
+import org.bsc.langgraph4j.StateGraph;
 import org.bsc.langgraph4j.action.Command;
-import org.bsc.langgraph4j.action.CommandAction;
+import com.github.zavier.customer.support.agent.resilience.DegradableNode;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @Component
-public class BugTrackingCmdNode implements CommandAction<MessageAgentState> {
+public class BugTrackingCmdNode implements DegradableNode {
+
+    @Resource
+    private BugTicketStore bugTicketStore;
 
     @Override
     public Command apply(MessageAgentState state, RunnableConfig config) throws Exception {
-        // TODO 添加/更新Bug跟踪逻辑
-        String ticketId = "BUG-12345";
+        // 预热和回放不创建工单
+        if (ModelRouter.isStub(config)) {
+            return new Command("draftResponse",
+                    Map.of("searchResults", List.of("Bug Ticket created"),
+                            "currentStep", "bugTracked"));
+        }
+
+        final String topic = state.classification().map(MessageClassification::topic).orElse("");
+        final BugTicketStore.Report report = bugTicketStore.report(state.messageContent(), topic);
+        final BugTicket ticket = report.ticket();
+
+        // 已有工单且已经生成过状态回复，直接复用，不再调用模型
+        final Optional<String> statusResponse = report.duplicate() ? ticket.statusResponse() : Optional.empty();
+        if (statusResponse.isPresent()) {
+            bugTicketStore.markResponseReused();
+            String gotoNode = DraftResponseCmdNode.needReview(state) ? "humanReview" : StateGraph.END;
+            return new Command(gotoNode,
+                    Map.of("bugTicketId", ticket.id(),
+                            "draftResponse", statusResponse.get(),
+                            "currentStep", "bugTracked"));
+        }
 
+        final String ticketInfo = report.duplicate()
+                ? "Bug Ticket " + ticket.id() + " already exists, reported " + ticket.reports() + " times"
+                : "Bug Ticket " + ticket.id() + " created";
         return new Command("draftResponse",
-                // 赋值给searchResult?  currentStep没这个状态？
-                Map.of("searchResults", List.of("Bug Ticket " + ticketId + "created"),
+                Map.of("bugTicketId", ticket.id(),
+                        "searchResults", List.of(ticketInfo),
                         "currentStep", "bugTracked"));
     }
+
+    /**
+     * 创建工单失败时不带工单信息继续生成回复
+     */
+    @Override
+    public Command fallback(MessageAgentState state, Throwable cause) {
+        return new Command("draftResponse", Map.of("searchResults", List.of()));
+    }
 }
@@ -4,10 +4,14 @@ import com.github.zavier.customer.support.agent.constant.Intent;
 import com.github.zavier.customer.support.agent.MessageAgentState;
 import com.github.zavier.customer.support.agent.MessageClassification;
 import com.github.zavier.customer.support.agent.constant.Urgency;
+import com.github.zavier.customer.support.agent.batch.ClassificationBatcher;
+import com.github.zavier.customer.support.agent.llm.ModelRouter;
+import com.github.zavier.customer.support.agent.usage.TokenBudgetExceededException;
+import jakarta.annotation.Resource;
 import org.bsc.langgraph4j.RunnableConfig;
+import org.bsc.langgraph4j.StateGraph;
 import org.bsc.langgraph4j.action.Command;
-import org.bsc.langgraph4j.action.CommandAction;
-import org.springframework.ai.chat.client.ChatClient;
+import com.github.zavier.customer.support.agent.resilience.DegradableNode;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.template.st.StTemplateRenderer;
@@ -15,11 +19,15 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 
 import java.util.Map;
+import java.util.Optional;
 
 @Component
-public class ClassifyIntentCmdNode implements CommandAction<MessageAgentState> {
+public class ClassifyIntentCmdNode implements DegradableNode {
 
-    private ChatClient chatClient;
+    @Resource
+    private ModelRouter modelRouter;
+    @Resource
+    private ClassificationBatcher classificationBatcher;
 
     private PromptTemplate promptTemplate = PromptTemplate.builder()
             .renderer(StTemplateRenderer.builder().startDelimiterToken('<').endDelimiterToken('>').build())
@@ -33,17 +41,13 @@ public class ClassifyIntentCmdNode implements CommandAction<MessageAgentState> {
                 """)
             .build();
 
-    public ClassifyIntentCmdNode(ChatClient.Builder chatClientBuilder) {
-        this.chatClient = chatClientBuilder
-                .defaultAdvisors(new SimpleLoggerAdvisor())
-                .build();
-    }
-
     @Override
     public Command apply(MessageAgentState state, RunnableConfig config) throws Exception {
-        final MessageClassification classification = chatClient.prompt(promptTemplate.render(state.data()))
-                .call()
-                .entity(MessageClassification.class);
+        // 批量分类没有返回该消息的结果时，单独分类
+        Optional<MessageClassification> batched = classificationBatcher.accepts(state, config)
+                ? classificationBatcher.classify(state, config)
+                : Optional.empty();
+        final MessageClassification classification = batched.isPresent() ? batched.get() : classify(state, config);
         Assert.notNull(classification, "classification cannot be null");
 
         String gotoNode;
@@ -59,4 +63,28 @@ public class ClassifyIntentCmdNode implements CommandAction<MessageAgentState> {
 
         return new Command(gotoNode, Map.of("classification", classification));
     }
+
+    private MessageClassification classify(MessageAgentState state, RunnableConfig config) {
+        return modelRouter.prompt("classifyIntent", state, config, promptTemplate.render(state.data()))
+                .advisors(new SimpleLoggerAdvisor())
+                .call()
+                .entity(MessageClassification.class);
+    }
+
+    /**
+     * 无法分类时按 COMPLEX 处理并转人工审核；token 预算用完时返回固定回复直接结束，避免人工审核被大量涌入
+     */
+    @Override
+    public Command fallback(MessageAgentState state, Throwable cause) {
+        final MessageClassification classification = new MessageClassification(
+                Intent.COMPLEX, Urgency.MEDIUM, "unknown", state.messageContent());
+        if (cause instanceof TokenBudgetExceededException) {
+            return new Command(StateGraph.END, Map.of(
+                    "classification", classification,
+                    "draftResponse", TokenBudgetExceededException.REPLY));
+        }
+        return new Command("humanReview", Map.of(
+                "classification", classification,
+                "draftResponse", "您好，您的问题已转交人工客服处理，我们会尽快回复您。"));
+    }
 }
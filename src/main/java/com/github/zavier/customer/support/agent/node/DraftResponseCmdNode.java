@@ -4,11 +4,14 @@ import com.github.zavier.customer.support.agent.constant.Intent;
 import com.github.zavier.customer.support.agent.MessageAgentState;
 import com.github.zavier.customer.support.agent.MessageClassification;
 import com.github.zavier.customer.support.agent.constant.Urgency;
+import com.github.zavier.customer.support.agent.bug.BugTicketStore;
+import com.github.zavier.customer.support.agent.llm.ModelRouter;
+import com.github.zavier.customer.support.agent.usage.TokenBudgetExceededException;
+import jakarta.annotation.Resource;
 import org.bsc.langgraph4j.RunnableConfig;
 import org.bsc.langgraph4j.StateGraph;
 import org.bsc.langgraph4j.action.Command;
-import org.bsc.langgraph4j.action.CommandAction;
-import org.springframework.ai.chat.client.ChatClient;
+import com.github.zavier.customer.support.agent.resilience.DegradableNode;
 import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.template.st.StTemplateRenderer;
 import org.springframework.stereotype.Component;
@@ -17,13 +20,12 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 @Component
-public class DraftResponseCmdNode implements CommandAction<MessageAgentState> {
+public class DraftResponseCmdNode implements DegradableNode {
 
-    private ChatClient chatClient;
-
-    public DraftResponseCmdNode(ChatClient.Builder chatClientBuilder) {
-        this.chatClient = chatClientBuilder.build();
-    }
+    @Resource
+    private ModelRouter modelRouter;
+    @Resource
+    private BugTicketStore bugTicketStore;
 
     private PromptTemplate promptTemplate = PromptTemplate.builder()
             .renderer(StTemplateRenderer.builder().startDelimiterToken('<').endDelimiterToken('>').build())
@@ -69,7 +71,8 @@ public class DraftResponseCmdNode implements CommandAction<MessageAgentState> {
                 "urgency", state.classification().map(MessageClassification::urgency).map(Urgency::name).orElse("medium"),
                 "contextSelections", contextSelections.isEmpty() ? "" : String.join("\n", contextSelections)
         );
-        final String response = chatClient.prompt(promptTemplate.render(promptDataMap))
+        // COMPLEX 或高紧急程度的回复可以路由到更大的模型
+        final String response = modelRouter.prompt("draftResponse", state, config, promptTemplate.render(promptDataMap))
                 .call()
                 .content();
 
@@ -78,10 +81,26 @@ public class DraftResponseCmdNode implements CommandAction<MessageAgentState> {
 
         String gotoNode = needReview ? "humanReview" : StateGraph.END;
 
+        // 无需审核时直接保存为工单的状态回复，相同Bug的后续上报直接复用；需要审核的在审核通过后保存
+        if (!needReview) {
+            state.bugTicketId().ifPresent(ticketId -> bugTicketStore.recordStatusResponse(ticketId, response));
+        }
+
         return new Command(gotoNode, Map.of("draftResponse", response));
     }
 
-    private static boolean needReview(MessageAgentState state) {
+    /**
+     * 生成回复失败时使用固定回复，并转人工审核；token 预算用完时直接结束
+     */
+    @Override
+    public Command fallback(MessageAgentState state, Throwable cause) {
+        if (cause instanceof TokenBudgetExceededException) {
+            return new Command(StateGraph.END, Map.of("draftResponse", TokenBudgetExceededException.REPLY));
+        }
+        return new Command("humanReview", Map.of("draftResponse", "抱歉，当前咨询量较大，客服人员会尽快回复您的问题。"));
+    }
+
+    static boolean needReview(MessageAgentState state) {
         final Optional<MessageClassification> classification = state.classification();
         if (classification.isEmpty()) {
             return false;
@@ -1,6 +1,8 @@
 package com.github.zavier.customer.support.agent.node;
 
 import com.github.zavier.customer.support.agent.MessageAgentState;
+import com.github.zavier.customer.support.agent.bug.BugTicketStore;
+import jakarta.annotation.Resource;
 import org.bsc.langgraph4j.RunnableConfig;
 import org.bsc.langgraph4j.StateGraph;
 import org.bsc.langgraph4j.action.Command;
@@ -11,6 +13,10 @@ import java.util.Map;
 
 @Component
 public class HumanReviewCmdNode implements CommandAction<MessageAgentState> {
+
+    @Resource
+    private BugTicketStore bugTicketStore;
+
     @Override
     public Command apply(MessageAgentState state, RunnableConfig config) throws Exception {
         // 需要在此之前中断，获取用户输入，到这里时已经有用户输入信息
@@ -18,6 +24,8 @@ public class HumanReviewCmdNode implements CommandAction<MessageAgentState> {
         final String humanDecision = state.humanDecision();
         if ("approved".equalsIgnoreCase(humanDecision)) {
             // TODO 这里可以加一个 editedResponse 参数，用于保存用户修改后的结果吗？
+            // 审核通过的回复才保存为工单的状态回复
+            state.bugTicketId().ifPresent(ticketId -> bugTicketStore.recordStatusResponse(ticketId, state.draftResponse()));
             return new Command(StateGraph.END, Map.of("draftResponse", state.draftResponse()));
         } else {
             return new Command(StateGraph.END, Map.of());
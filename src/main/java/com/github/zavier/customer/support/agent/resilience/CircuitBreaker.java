@@ -0,0 +1,142 @@
+package com.github.zavier.customer.support.agent.resilience;
+
+import com.github.zavier.customer.support.config.ResilienceProperties;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 基于最近 N 次调用的熔断器，失败和慢调用都计入失败比例
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final ResilienceProperties.NodePolicy policy;
+
+    // 环形窗口，true 表示失败或慢调用
+    private final boolean[] window;
+    private int position;
+    private int size;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean halfOpenTrialInFlight;
+
+    private long rejectedCalls;
+
+    public CircuitBreaker(String name, ResilienceProperties.NodePolicy policy) {
+        this.name = name;
+        this.policy = policy;
+        this.window = new boolean[Math.max(1, policy.getWindowSize())];
+    }
+
+    /**
+     * 是否允许本次调用，半开状态只放行一次试探调用
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < policy.getOpenDuration().toMillis()) {
+                rejectedCalls++;
+                return false;
+            }
+            state = State.HALF_OPEN;
+            halfOpenTrialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenTrialInFlight) {
+                rejectedCalls++;
+                return false;
+            }
+            halfOpenTrialInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess(long elapsedMillis) {
+        final boolean slow = elapsedMillis >= policy.getSlowCallThreshold().toMillis();
+        if (state == State.HALF_OPEN) {
+            if (slow) {
+                open();
+            } else {
+                reset();
+            }
+            return;
+        }
+        record(slow);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+    }
+
+    /**
+     * 调用没有结果可记录时（线程池已满、调用方被中断）释放半开状态的试探名额，不计入成功或失败
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            halfOpenTrialInFlight = false;
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state.name());
+        stats.put("windowCalls", size);
+        stats.put("windowFailures", failures);
+        stats.put("rejectedCalls", rejectedCalls);
+        return stats;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    private void record(boolean failed) {
+        if (size == window.length) {
+            if (window[position]) {
+                failures--;
+            }
+        } else {
+            size++;
+        }
+        window[position] = failed;
+        if (failed) {
+            failures++;
+        }
+        position = (position + 1) % window.length;
+
+        if (state == State.CLOSED && size >= policy.getMinimumCalls()
+                && (double) failures / size >= policy.getFailureRateThreshold()) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        halfOpenTrialInFlight = false;
+    }
+
+    private void reset() {
+        state = State.CLOSED;
+        halfOpenTrialInFlight = false;
+        position = 0;
+        size = 0;
+        failures = 0;
+        Arrays.fill(window, false);
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.zavier.customer.support.agent.resilience;
+
+import com.github.zavier.customer.support.agent.MessageAgentState;
+import org.bsc.langgraph4j.action.Command;
+import org.bsc.langgraph4j.action.CommandAction;
+
+/**
+ * 带降级结果的节点，超时、异常或熔断时由 {@link NodeGuard} 调用 {@link #fallback}
+ */
+public interface DegradableNode extends CommandAction<MessageAgentState> {
+
+    Command fallback(MessageAgentState state, Throwable cause);
+}
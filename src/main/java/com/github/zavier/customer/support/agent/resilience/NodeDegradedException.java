@@ -0,0 +1,11 @@
+package com.github.zavier.customer.support.agent.resilience;
+
+/**
+ * 节点主动要求降级（如预算耗尽），直接返回降级结果，不计入熔断失败
+ */
+public class NodeDegradedException extends RuntimeException {
+
+    public NodeDegradedException(String message) {
+        super(message);
+    }
+}
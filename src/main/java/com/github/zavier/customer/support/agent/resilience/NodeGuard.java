@@ -0,0 +1,135 @@
+package com.github.zavier.customer.support.agent.resilience;
+
+import com.github.zavier.customer.support.agent.MessageAgentState;
+import com.github.zavier.customer.support.config.ResilienceProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.bsc.langgraph4j.RunnableConfig;
+import org.bsc.langgraph4j.action.Command;
+import org.bsc.langgraph4j.action.CommandAction;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 为节点加上超时、熔断和降级：
+ * 超时取节点配置与请求剩余时间的较小值，超时/异常/熔断/线程池满时返回节点定义的降级结果
+ */
+@Slf4j
+@Component
+public class NodeGuard {
+
+    @Resource
+    private ResilienceProperties resilienceProperties;
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> degradations = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        final AtomicInteger counter = new AtomicInteger();
+        // 不排队，线程用完后直接拒绝并降级，避免请求堆积在挂起的连接上
+        executor = new ThreadPoolExecutor(0, resilienceProperties.getMaxConcurrentCalls(),
+                60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "node-guard-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    public CommandAction<MessageAgentState> guard(String nodeName, DegradableNode node) {
+        final ResilienceProperties.NodePolicy policy = resilienceProperties.policy(nodeName);
+        final CircuitBreaker breaker = breakers.computeIfAbsent(nodeName, name -> new CircuitBreaker(name, policy));
+        return (state, config) -> execute(nodeName, node, policy, breaker, state, config);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new TreeMap<>();
+        breakers.forEach((name, breaker) -> {
+            Map<String, Object> nodeStats = new LinkedHashMap<>(breaker.stats());
+            nodeStats.put("degradations", degradations.getOrDefault(name, new LongAdder()).sum());
+            stats.put(name, nodeStats);
+        });
+        return stats;
+    }
+
+    private Command execute(String nodeName,
+                            DegradableNode node,
+                            ResilienceProperties.NodePolicy policy,
+                            CircuitBreaker breaker,
+                            MessageAgentState state,
+                            RunnableConfig config) throws Exception {
+        long timeoutMillis = policy.getTimeout().toMillis();
+        final OptionalLong remaining = RequestDeadline.remainingMillis(config);
+        if (remaining.isPresent()) {
+            timeoutMillis = Math.min(timeoutMillis, remaining.getAsLong());
+        }
+        if (timeoutMillis <= 0) {
+            return degrade(nodeName, node, state, new TimeoutException("请求已超过截止时间"));
+        }
+        if (!breaker.tryAcquire()) {
+            return degrade(nodeName, node, state, new IllegalStateException("节点 " + nodeName + " 熔断中"));
+        }
+
+        final long start = System.nanoTime();
+        final Future<Command> future;
+        try {
+            future = executor.submit(() -> node.apply(state, config));
+        } catch (RejectedExecutionException e) {
+            // 线程池满不代表节点故障，不计入熔断
+            breaker.release();
+            return degrade(nodeName, node, state, e);
+        }
+
+        boolean recorded = false;
+        try {
+            final Command command = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            breaker.onSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            recorded = true;
+            return command;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            breaker.onFailure();
+            recorded = true;
+            return degrade(nodeName, node, state, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof NodeDegradedException) {
+                // 节点本身正常，只是主动降级
+                breaker.onSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } else {
+                breaker.onFailure();
+            }
+            recorded = true;
+            return degrade(nodeName, node, state, e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        } finally {
+            // 被中断等没有记录结果时释放半开试探名额，否则熔断器会一直拒绝调用
+            if (!recorded) {
+                breaker.release();
+            }
+        }
+    }
+
+    private Command degrade(String nodeName, DegradableNode node, MessageAgentState state, Throwable cause) {
+        degradations.computeIfAbsent(nodeName, name -> new LongAdder()).increment();
+        log.warn("节点 {} 降级处理: {}", nodeName, cause.toString());
+        return node.fallback(state, cause);
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.zavier.customer.support.agent.resilience;
+
+import org.bsc.langgraph4j.RunnableConfig;
+
+import java.time.Duration;
+import java.util.OptionalLong;
+
+/**
+ * 通过 RunnableConfig 的 metadata 在节点间传递请求截止时间（epoch 毫秒）
+ */
+public final class RequestDeadline {
+
+    public static final String METADATA_KEY = "deadline";
+
+    private RequestDeadline() {
+    }
+
+    public static RunnableConfig withTimeout(RunnableConfig config, Duration timeout) {
+        return RunnableConfig.builder(config)
+                .addMetadata(METADATA_KEY, System.currentTimeMillis() + timeout.toMillis())
+                .build();
+    }
+
+    /**
+     * 距离截止时间的剩余毫秒数，未设置截止时间时为空
+     */
+    public static OptionalLong remainingMillis(RunnableConfig config) {
+        return config.metadata(METADATA_KEY)
+                .filter(Long.class::isInstance)
+                .map(deadline -> OptionalLong.of((Long) deadline - System.currentTimeMillis()))
+                .orElse(OptionalLong.empty());
+    }
+}
@@ -0,0 +1,303 @@
+package com.github.zavier.customer.support.agent.serializer;
+
+import org.bsc.langgraph4j.RunnableConfig;
+import org.bsc.langgraph4j.checkpoint.BaseCheckpointSaver;
+import org.bsc.langgraph4j.checkpoint.Checkpoint;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 以二进制形式保存检查点的内存 Saver，与 MemorySaver 语义一致：
+ * 每隔 {@link #KEYFRAME_INTERVAL} 个检查点保存一次完整状态，其余只保存与上一个检查点相比变化的 key；
+ * get 只还原请求的检查点，list/release 返回的列表在访问元素时才还原状态。
+ * 每个线程最多保留 maxCheckpoints 个检查点，超出时丢弃最旧的
+ */
+public class DeltaCheckpointSaver implements BaseCheckpointSaver {
+
+    private static final int KEYFRAME_INTERVAL = 8;
+    public static final int DEFAULT_MAX_CHECKPOINTS = 64;
+
+    private final int maxCheckpoints;
+    private final Map<String, ThreadCheckpoints> threads = new ConcurrentHashMap<>();
+
+    private final LongAdder keyframes = new LongAdder();
+    private final LongAdder deltas = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder encodeNanos = new LongAdder();
+    private final LongAdder decodes = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+    private final LongAdder trimmed = new LongAdder();
+
+    public DeltaCheckpointSaver() {
+        this(DEFAULT_MAX_CHECKPOINTS);
+    }
+
+    public DeltaCheckpointSaver(int maxCheckpoints) {
+        if (maxCheckpoints < 1) {
+            throw new IllegalArgumentException("maxCheckpoints must be positive");
+        }
+        this.maxCheckpoints = maxCheckpoints;
+    }
+
+    @Override
+    public Collection<Checkpoint> list(RunnableConfig config) {
+        final ThreadCheckpoints thread = thread(config);
+        synchronized (thread) {
+            return new LazyCheckpoints(List.copyOf(thread.entries));
+        }
+    }
+
+    @Override
+    public Optional<Checkpoint> get(RunnableConfig config) {
+        final ThreadCheckpoints thread = thread(config);
+        synchronized (thread) {
+            if (thread.entries.isEmpty()) {
+                return Optional.empty();
+            }
+            final int position = config.checkPointId().map(thread::indexOf).orElse(thread.entries.size() - 1);
+            if (position < 0) {
+                return Optional.empty();
+            }
+            return Optional.of(thread.entries.get(position).toCheckpoint(restore(thread.entries, position)));
+        }
+    }
+
+    @Override
+    public RunnableConfig put(RunnableConfig config, Checkpoint checkpoint) throws Exception {
+        final ThreadCheckpoints thread = thread(config);
+        synchronized (thread) {
+            if (config.checkPointId().isPresent()) {
+                // 替换已有检查点
+                final String checkPointId = config.checkPointId().get();
+                final int position = thread.indexOf(checkPointId);
+                if (position < 0) {
+                    throw new NoSuchElementException(String.format("Checkpoint with id %s not found!", checkPointId));
+                }
+                replace(thread, position, checkpoint);
+                return config;
+            }
+
+            final Map<String, Object> state = checkpoint.getState();
+            final boolean keyframe = thread.latestState == null || thread.sinceKeyframe >= KEYFRAME_INTERVAL - 1;
+            final Entry entry = keyframe
+                    ? encodeFull(checkpoint, state)
+                    : encodeDelta(checkpoint, thread.latestState, state);
+            thread.entries.add(entry);
+            thread.latestState = new HashMap<>(state);
+            thread.sinceKeyframe = keyframe ? 0 : thread.sinceKeyframe + 1;
+            trim(thread);
+
+            return RunnableConfig.builder(config)
+                    .checkPointId(checkpoint.getId())
+                    .build();
+        }
+    }
+
+    @Override
+    public Tag release(RunnableConfig config) throws Exception {
+        final String threadId = config.threadId().orElse(THREAD_ID_DEFAULT);
+        final ThreadCheckpoints thread = threads.remove(threadId);
+        if (thread == null) {
+            return new Tag(threadId, List.of());
+        }
+        synchronized (thread) {
+            return new Tag(threadId, new LazyCheckpoints(List.copyOf(thread.entries)));
+        }
+    }
+
+    @Override
+    public boolean clear(RunnableConfig config) {
+        final String threadId = config.threadId().orElse(THREAD_ID_DEFAULT);
+        return threads.remove(threadId) != null;
+    }
+
+    public Map<String, Object> stats() {
+        final long checkpointCount = keyframes.sum() + deltas.sum();
+        final long decodeCount = decodes.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", threads.size());
+        stats.put("keyframes", keyframes.sum());
+        stats.put("deltas", deltas.sum());
+        stats.put("avgBytesPerCheckpoint", checkpointCount == 0 ? 0 : bytesWritten.sum() / checkpointCount);
+        stats.put("avgEncodeMicros", checkpointCount == 0 ? 0 : encodeNanos.sum() / checkpointCount / 1000);
+        stats.put("decodes", decodeCount);
+        stats.put("avgDecodeMicros", decodeCount == 0 ? 0 : decodeNanos.sum() / decodeCount / 1000);
+        stats.put("maxCheckpointsPerThread", maxCheckpoints);
+        stats.put("trimmed", trimmed.sum());
+        return stats;
+    }
+
+    private ThreadCheckpoints thread(RunnableConfig config) {
+        return threads.computeIfAbsent(config.threadId().orElse(THREAD_ID_DEFAULT), id -> new ThreadCheckpoints());
+    }
+
+    /**
+     * 找到 position 之前（更旧）最近的完整状态，再依次应用增量；最旧的检查点总是完整状态
+     */
+    private Map<String, Object> restore(List<Entry> entries, int position) {
+        int keyframePosition = position;
+        while (!entries.get(keyframePosition).keyframe()) {
+            keyframePosition--;
+        }
+        Map<String, Object> state = decodeFull(entries.get(keyframePosition));
+        for (int i = keyframePosition + 1; i <= position; i++) {
+            state = applyDelta(state, entries.get(i));
+        }
+        return state;
+    }
+
+    /**
+     * 替换后该检查点保存为完整状态，后一个检查点的增量基准变化，同样改为完整状态
+     */
+    private void replace(ThreadCheckpoints thread, int position, Checkpoint checkpoint) {
+        final List<Entry> entries = thread.entries;
+        final int latest = entries.size() - 1;
+        if (position < latest) {
+            final Entry newer = entries.get(position + 1);
+            final Map<String, Object> newerState = restore(entries, position + 1);
+            entries.set(position + 1, encodeFull(newer.toCheckpoint(newerState), newerState));
+        }
+        entries.set(position, encodeFull(checkpoint, checkpoint.getState()));
+        if (position == latest) {
+            thread.latestState = new HashMap<>(checkpoint.getState());
+        }
+        if (position >= latest - 1) {
+            thread.sinceKeyframe = 0;
+        }
+    }
+
+    /**
+     * 丢弃超出上限的最旧检查点，保留下来的最旧检查点不是完整状态时改为完整状态
+     */
+    private void trim(ThreadCheckpoints thread) {
+        final List<Entry> entries = thread.entries;
+        final int drop = entries.size() - maxCheckpoints;
+        if (drop <= 0) {
+            return;
+        }
+        final Entry oldest = entries.get(drop);
+        if (!oldest.keyframe()) {
+            final Map<String, Object> state = restore(entries, drop);
+            entries.set(drop, encodeFull(oldest.toCheckpoint(state), state));
+            if (drop == entries.size() - 1) {
+                thread.sinceKeyframe = 0;
+            }
+        }
+        entries.subList(0, drop).clear();
+        trimmed.add(drop);
+    }
+
+    private Entry encodeFull(Checkpoint checkpoint, Map<String, Object> state) {
+        final long start = System.nanoTime();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            StateCodec.writeState(state, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("检查点编码异常", e);
+        }
+        keyframes.increment();
+        return record(checkpoint, bytes.toByteArray(), true, start);
+    }
+
+    private Entry encodeDelta(Checkpoint checkpoint, Map<String, Object> previous, Map<String, Object> state) {
+        final long start = System.nanoTime();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            StateCodec.writeDelta(previous, state, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("检查点编码异常", e);
+        }
+        deltas.increment();
+        return record(checkpoint, bytes.toByteArray(), false, start);
+    }
+
+    private Entry record(Checkpoint checkpoint, byte[] payload, boolean keyframe, long start) {
+        encodeNanos.add(System.nanoTime() - start);
+        bytesWritten.add(payload.length);
+        return new Entry(checkpoint.getId(), checkpoint.getNodeId(), checkpoint.getNextNodeId(), payload, keyframe);
+    }
+
+    private Map<String, Object> decodeFull(Entry entry) {
+        final long start = System.nanoTime();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry.payload()))) {
+            return StateCodec.readState(in);
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("检查点解码异常 id:" + entry.id(), e);
+        } finally {
+            decodes.increment();
+            decodeNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private Map<String, Object> applyDelta(Map<String, Object> previous, Entry entry) {
+        final long start = System.nanoTime();
+        final Map<String, Object> state = new HashMap<>(previous);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry.payload()))) {
+            StateCodec.applyDelta(state, in);
+            return state;
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("检查点解码异常 id:" + entry.id(), e);
+        } finally {
+            decodes.increment();
+            decodeNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private record Entry(String id, String nodeId, String nextNodeId, byte[] payload, boolean keyframe) {
+
+        Checkpoint toCheckpoint(Map<String, Object> state) {
+            return Checkpoint.builder()
+                    .id(id)
+                    .nodeId(nodeId)
+                    .nextNodeId(nextNodeId)
+                    .state(state)
+                    .build();
+        }
+    }
+
+    /**
+     * 检查点快照，最新的在前，访问元素时才还原状态
+     */
+    private final class LazyCheckpoints extends AbstractList<Checkpoint> {
+        // 最旧的在前
+        private final List<Entry> entries;
+
+        LazyCheckpoints(List<Entry> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public Checkpoint get(int index) {
+            final int position = entries.size() - 1 - index;
+            return entries.get(position).toCheckpoint(restore(entries, position));
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+    }
+
+    private static class ThreadCheckpoints {
+        // 最旧的检查点在前，新检查点追加在末尾
+        private final List<Entry> entries = new ArrayList<>();
+        // 最新检查点的状态，用于计算下一个增量，避免写入时解码
+        private Map<String, Object> latestState;
+        private int sinceKeyframe;
+
+        /**
+         * 从最新的检查点开始查找
+         */
+        int indexOf(String checkPointId) {
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                if (entries.get(i).id().equals(checkPointId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
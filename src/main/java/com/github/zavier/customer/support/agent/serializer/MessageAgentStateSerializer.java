@@ -0,0 +1,29 @@
+package com.github.zavier.customer.support.agent.serializer;
+
+import com.github.zavier.customer.support.agent.MessageAgentState;
+import org.bsc.langgraph4j.serializer.StateSerializer;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Map;
+
+/**
+ * 图在每一步复制状态时使用，替代默认的 Java 对象流序列化
+ */
+public class MessageAgentStateSerializer extends StateSerializer<MessageAgentState> {
+
+    public MessageAgentStateSerializer() {
+        super(MessageAgentState::new);
+    }
+
+    @Override
+    public void write(Map<String, Object> object, ObjectOutput out) throws IOException {
+        StateCodec.writeState(object, out);
+    }
+
+    @Override
+    public Map<String, Object> read(ObjectInput in) throws IOException, ClassNotFoundException {
+        return StateCodec.readState(in);
+    }
+}
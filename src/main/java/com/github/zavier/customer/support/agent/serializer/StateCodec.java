@@ -0,0 +1,292 @@
+package com.github.zavier.customer.support.agent.serializer;
+
+import com.github.zavier.customer.support.agent.MessageClassification;
+import com.github.zavier.customer.support.agent.constant.Intent;
+import com.github.zavier.customer.support.agent.constant.Urgency;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * MessageAgentState 的紧凑二进制编码：
+ * 常用 key 编码为单字节 id，Intent/Urgency 编码为序号，字符串为变长长度前缀的 UTF-8，
+ * 无法识别的值退化为 Java 序列化
+ */
+public final class StateCodec {
+
+    private static final int FORMAT_VERSION = 1;
+
+    // 只能在末尾追加，调整顺序会导致已有数据无法读取
+    private static final String[] KEYS = {
+            "messageContent", "userName", "classification", "searchResults",
+            "customerHistory", "draftResponse", "humanDecision", "currentStep",
+            "bugTicketId"
+    };
+    private static final Map<String, Integer> KEY_IDS = new HashMap<>();
+    private static final int CUSTOM_KEY = 0xFF;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_STRING = 1;
+    private static final int TAG_CLASSIFICATION = 2;
+    private static final int TAG_STRING_LIST = 3;
+    private static final int TAG_STRING_MAP = 4;
+    private static final int TAG_OBJECT = 5;
+
+    private static final int NULL_ORDINAL = 0xFF;
+
+    static {
+        for (int i = 0; i < KEYS.length; i++) {
+            KEY_IDS.put(KEYS[i], i);
+        }
+    }
+
+    private StateCodec() {
+    }
+
+    public static void writeState(Map<String, Object> state, DataOutput out) throws IOException {
+        out.writeByte(FORMAT_VERSION);
+        writeEntries(state, out);
+    }
+
+    public static Map<String, Object> readState(DataInput in) throws IOException, ClassNotFoundException {
+        final int version = in.readUnsignedByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("不支持的状态编码版本: " + version);
+        }
+        Map<String, Object> state = new HashMap<>();
+        readEntries(state, in);
+        return state;
+    }
+
+    /**
+     * 只写入与 previous 相比发生变化的 key，以及被删除的 key
+     */
+    public static void writeDelta(Map<String, Object> previous, Map<String, Object> current, DataOutput out) throws IOException {
+        Map<String, Object> changed = new HashMap<>();
+        current.forEach((key, value) -> {
+            if (!previous.containsKey(key) || !Objects.equals(previous.get(key), value)) {
+                changed.put(key, value);
+            }
+        });
+        List<String> removed = new ArrayList<>();
+        previous.keySet().forEach(key -> {
+            if (!current.containsKey(key)) {
+                removed.add(key);
+            }
+        });
+
+        out.writeByte(FORMAT_VERSION);
+        writeEntries(changed, out);
+        writeVarInt(removed.size(), out);
+        for (String key : removed) {
+            writeKey(key, out);
+        }
+    }
+
+    public static void applyDelta(Map<String, Object> state, DataInput in) throws IOException, ClassNotFoundException {
+        final int version = in.readUnsignedByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("不支持的状态编码版本: " + version);
+        }
+        readEntries(state, in);
+        final int removed = readVarInt(in);
+        for (int i = 0; i < removed; i++) {
+            state.remove(readKey(in));
+        }
+    }
+
+    private static void writeEntries(Map<String, Object> entries, DataOutput out) throws IOException {
+        writeVarInt(entries.size(), out);
+        for (Map.Entry<String, Object> entry : entries.entrySet()) {
+            writeKey(entry.getKey(), out);
+            writeValue(entry.getValue(), out);
+        }
+    }
+
+    private static void readEntries(Map<String, Object> state, DataInput in) throws IOException, ClassNotFoundException {
+        final int size = readVarInt(in);
+        for (int i = 0; i < size; i++) {
+            final String key = readKey(in);
+            state.put(key, readValue(in));
+        }
+    }
+
+    private static void writeKey(String key, DataOutput out) throws IOException {
+        final Integer id = KEY_IDS.get(key);
+        if (id != null) {
+            out.writeByte(id);
+        } else {
+            out.writeByte(CUSTOM_KEY);
+            writeString(key, out);
+        }
+    }
+
+    private static String readKey(DataInput in) throws IOException {
+        final int id = in.readUnsignedByte();
+        if (id == CUSTOM_KEY) {
+            return readString(in);
+        }
+        if (id >= KEYS.length) {
+            throw new IOException("未知的状态 key id: " + id);
+        }
+        return KEYS[id];
+    }
+
+    private static void writeValue(Object value, DataOutput out) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof String s) {
+            out.writeByte(TAG_STRING);
+            writeString(s, out);
+        } else if (value instanceof MessageClassification c) {
+            out.writeByte(TAG_CLASSIFICATION);
+            out.writeByte(c.intent() == null ? NULL_ORDINAL : c.intent().ordinal());
+            out.writeByte(c.urgency() == null ? NULL_ORDINAL : c.urgency().ordinal());
+            writeString(c.topic(), out);
+            writeString(c.summary(), out);
+        } else if (isStringList(value)) {
+            final List<?> list = (List<?>) value;
+            out.writeByte(TAG_STRING_LIST);
+            writeVarInt(list.size(), out);
+            for (Object item : list) {
+                writeString((String) item, out);
+            }
+        } else if (isStringMap(value)) {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(TAG_STRING_MAP);
+            writeVarInt(map.size(), out);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString((String) entry.getKey(), out);
+                writeString((String) entry.getValue(), out);
+            }
+        } else {
+            out.writeByte(TAG_OBJECT);
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+                objectOut.writeObject(value);
+            }
+            writeBytes(bytes.toByteArray(), out);
+        }
+    }
+
+    private static Object readValue(DataInput in) throws IOException, ClassNotFoundException {
+        final int tag = in.readUnsignedByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return readString(in);
+            case TAG_CLASSIFICATION: {
+                final int intent = in.readUnsignedByte();
+                final int urgency = in.readUnsignedByte();
+                return new MessageClassification(
+                        intent == NULL_ORDINAL ? null : Intent.values()[intent],
+                        urgency == NULL_ORDINAL ? null : Urgency.values()[urgency],
+                        readString(in),
+                        readString(in));
+            }
+            case TAG_STRING_LIST: {
+                final int size = readVarInt(in);
+                List<String> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readString(in));
+                }
+                return list;
+            }
+            case TAG_STRING_MAP: {
+                final int size = readVarInt(in);
+                Map<String, String> map = new HashMap<>();
+                for (int i = 0; i < size; i++) {
+                    map.put(readString(in), readString(in));
+                }
+                return map;
+            }
+            case TAG_OBJECT: {
+                try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(readBytes(in)))) {
+                    return objectIn.readObject();
+                }
+            }
+            default:
+                throw new IOException("未知的状态值类型: " + tag);
+        }
+    }
+
+    private static boolean isStringList(Object value) {
+        if (!(value instanceof List<?> list)) {
+            return false;
+        }
+        for (Object item : list) {
+            if (!(item instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isStringMap(Object value) {
+        if (!(value instanceof Map<?, ?> map)) {
+            return false;
+        }
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!(entry.getKey() instanceof String) || !(entry.getValue() instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 长度写为 len + 1，0 表示 null
+     */
+    private static void writeString(String value, DataOutput out) throws IOException {
+        if (value == null) {
+            writeVarInt(0, out);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length + 1, out);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        final int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(byte[] bytes, DataOutput out) throws IOException {
+        writeVarInt(bytes.length, out);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        final byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeVarInt(int value, DataOutput out) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("变长整数格式错误");
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.zavier.customer.support.agent.usage;
+
+import com.github.zavier.customer.support.config.TokenBudgetProperties;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 根据会话和租户的 token 用量决定降级级别：
+ * 限制回复长度 -> 改用小模型 -> 固定回复
+ */
+@Slf4j
+@Component
+public class TokenBudget {
+
+    public enum Level {
+        NORMAL, REDUCED, DOWNGRADED, EXHAUSTED
+    }
+
+    @Resource
+    private TokenBudgetProperties tokenBudgetProperties;
+    @Resource
+    private TokenUsageMeter tokenUsageMeter;
+
+    private final Map<Level, LongAdder> decisions = new ConcurrentHashMap<>();
+
+    public String tenantOf(String userName) {
+        if (!StringUtils.hasText(userName)) {
+            return tokenBudgetProperties.getDefaultTenant();
+        }
+        return tokenBudgetProperties.getUserTenants().getOrDefault(userName, tokenBudgetProperties.getDefaultTenant());
+    }
+
+    /**
+     * 取会话和租户中用量比例较高的一个，sessionId 为 null（没有 threadId 的执行）时只按租户计算
+     */
+    public Level check(String sessionId, String tenant) {
+        return level(sessionId, tenant, true);
+    }
+
+    /**
+     * 与 check 相同，但不计入决策统计，用于只需要预先判断级别的场景
+     */
+    public Level peek(String sessionId, String tenant) {
+        return level(sessionId, tenant, false);
+    }
+
+    private Level level(String sessionId, String tenant, boolean record) {
+        if (!tokenBudgetProperties.isEnabled()) {
+            return Level.NORMAL;
+        }
+        final double sessionRatio = ratio(tokenUsageMeter.sessionTokens(sessionId), tokenBudgetProperties.getSessionTokens());
+        final long tenantLimit = tokenBudgetProperties.getTenantMonthlyTokens()
+                .getOrDefault(tenant, tokenBudgetProperties.getDefaultTenantMonthlyTokens());
+        final double tenantRatio = ratio(tokenUsageMeter.tenantMonthTokens(tenant), tenantLimit);
+        final double ratio = Math.max(sessionRatio, tenantRatio);
+
+        final Level level;
+        if (ratio >= 1) {
+            level = Level.EXHAUSTED;
+        } else if (ratio >= tokenBudgetProperties.getDowngradeRatio()) {
+            level = Level.DOWNGRADED;
+        } else if (ratio >= tokenBudgetProperties.getReduceRatio()) {
+            level = Level.REDUCED;
+        } else {
+            level = Level.NORMAL;
+        }
+        if (!record) {
+            return level;
+        }
+        decisions.computeIfAbsent(level, key -> new LongAdder()).increment();
+        if (level != Level.NORMAL) {
+            log.info("token 预算降级 session:{} tenant:{} sessionRatio:{} tenantRatio:{} level:{}",
+                    sessionId, tenant, sessionRatio, tenantRatio, level);
+        }
+        return level;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Level level : Level.values()) {
+            stats.put(level.name(), decisions.getOrDefault(level, new LongAdder()).sum());
+        }
+        return stats;
+    }
+
+    private static double ratio(long used, long limit) {
+        return limit <= 0 ? 0 : (double) used / limit;
+    }
+}
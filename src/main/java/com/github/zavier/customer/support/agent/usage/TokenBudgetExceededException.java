@@ -0,0 +1,15 @@
+package com.github.zavier.customer.support.agent.usage;
+
+import com.github.zavier.customer.support.agent.resilience.NodeDegradedException;
+
+/**
+ * token 预算已用完，节点降级时直接返回 REPLY 并结束，不再转人工审核
+ */
+public class TokenBudgetExceededException extends NodeDegradedException {
+
+    public static final String REPLY = "您好，当前咨询量较大，暂时无法自动回复，请稍后再试或通过工单联系我们。";
+
+    public TokenBudgetExceededException(String message) {
+        super(message);
+    }
+}
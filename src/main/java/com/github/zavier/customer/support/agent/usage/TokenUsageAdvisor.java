@@ -0,0 +1,103 @@
+package com.github.zavier.customer.support.agent.usage;
+
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.core.Ordered;
+import org.springframework.util.StringUtils;
+
+/**
+ * 从响应中读取 token 用量，会话和租户通过 advisor 参数传入。
+ * 调用模型期间在当前线程上保留归属信息，HedgingChatModel 据此记录对冲中落败请求的用量
+ */
+public class TokenUsageAdvisor implements CallAdvisor {
+
+    public static final String SESSION_PARAM = "tokenUsage.session";
+    public static final String TENANT_PARAM = "tokenUsage.tenant";
+
+    // 模型调用与 advisor 在同一线程上同步执行
+    private static final ThreadLocal<Attribution> CURRENT = new ThreadLocal<>();
+
+    private final String node;
+    private final String configuredModel;
+    private final TokenUsageMeter tokenUsageMeter;
+
+    public TokenUsageAdvisor(String node, String configuredModel, TokenUsageMeter tokenUsageMeter) {
+        this.node = node;
+        this.configuredModel = configuredModel;
+        this.tokenUsageMeter = tokenUsageMeter;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        final Attribution attribution = new Attribution(tokenUsageMeter, node, configuredModel,
+                (String) chatClientRequest.context().get(SESSION_PARAM),
+                (String) chatClientRequest.context().get(TENANT_PARAM));
+        final Attribution previous = CURRENT.get();
+        CURRENT.set(attribution);
+        final ChatClientResponse response;
+        try {
+            response = callAdvisorChain.nextCall(chatClientRequest);
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+        attribution.record(response.chatResponse());
+        return response;
+    }
+
+    /**
+     * 当前线程上正在进行的模型调用的用量归属，不经过本 advisor 的调用返回 null
+     */
+    public static Attribution current() {
+        return CURRENT.get();
+    }
+
+    @Override
+    public String getName() {
+        return "TokenUsageAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 1;
+    }
+
+    public static long cachedTokens(Usage usage) {
+        if (usage.getNativeUsage() instanceof OpenAiApi.Usage openAiUsage
+                && openAiUsage.promptTokensDetails() != null
+                && openAiUsage.promptTokensDetails().cachedTokens() != null) {
+            return openAiUsage.promptTokensDetails().cachedTokens();
+        }
+        return 0;
+    }
+
+    private static long valueOf(Integer tokens) {
+        return tokens == null ? 0 : tokens;
+    }
+
+    public record Attribution(TokenUsageMeter tokenUsageMeter, String node, String configuredModel,
+                              String sessionId, String tenant) {
+
+        public void record(ChatResponse chatResponse) {
+            if (chatResponse == null || chatResponse.getMetadata().getUsage() == null) {
+                return;
+            }
+            final Usage usage = chatResponse.getMetadata().getUsage();
+            final String model = StringUtils.hasText(chatResponse.getMetadata().getModel())
+                    ? chatResponse.getMetadata().getModel()
+                    : configuredModel;
+            tokenUsageMeter.record(node, model, sessionId, tenant,
+                    valueOf(usage.getPromptTokens()),
+                    valueOf(usage.getCompletionTokens()),
+                    cachedTokens(usage));
+        }
+    }
+}
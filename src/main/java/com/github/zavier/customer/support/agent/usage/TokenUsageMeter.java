@@ -0,0 +1,149 @@
+package com.github.zavier.customer.support.agent.usage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.zavier.customer.support.config.TokenBudgetProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按 节点/模型/会话/租户 维度累计 token 用量，租户用量按自然月统计
+ */
+@Component
+public class TokenUsageMeter {
+
+    @Resource
+    private TokenBudgetProperties tokenBudgetProperties;
+
+    private final Map<String, Counters> byNode = new ConcurrentHashMap<>();
+    private final Map<String, Counters> byModel = new ConcurrentHashMap<>();
+    private final Map<String, TenantCounters> byTenant = new ConcurrentHashMap<>();
+    private Cache<String, Counters> bySession;
+
+    @PostConstruct
+    public void init() {
+        bySession = Caffeine.newBuilder()
+                .expireAfterAccess(tokenBudgetProperties.getSessionIdleTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .maximumSize(100_000)
+                .build();
+    }
+
+    public void record(String node, String model, String sessionId, String tenant,
+                       long promptTokens, long completionTokens, long cachedTokens) {
+        byNode.computeIfAbsent(node, key -> new Counters()).add(promptTokens, completionTokens, cachedTokens);
+        byModel.computeIfAbsent(model == null ? "unknown" : model, key -> new Counters())
+                .add(promptTokens, completionTokens, cachedTokens);
+        if (sessionId != null) {
+            bySession.get(sessionId, key -> new Counters()).add(promptTokens, completionTokens, cachedTokens);
+        }
+        if (tenant != null) {
+            tenantCounters(tenant).add(promptTokens, completionTokens, cachedTokens);
+        }
+    }
+
+    /**
+     * 只计入会话和租户，用于把一次批量调用的用量分摊到各个会话
+     */
+    public void attribute(String sessionId, String tenant, long promptTokens, long completionTokens, long cachedTokens) {
+        if (sessionId != null) {
+            bySession.get(sessionId, key -> new Counters()).add(promptTokens, completionTokens, cachedTokens);
+        }
+        tenantCounters(tenant).add(promptTokens, completionTokens, cachedTokens);
+    }
+
+    public long sessionTokens(String sessionId) {
+        if (sessionId == null) {
+            return 0;
+        }
+        final Counters counters = bySession.getIfPresent(sessionId);
+        return counters == null ? 0 : counters.total();
+    }
+
+    public long tenantMonthTokens(String tenant) {
+        return tenantCounters(tenant).total();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> tenants = new TreeMap<>();
+        byTenant.forEach((tenant, counters) -> {
+            Map<String, Object> tenantStats = new LinkedHashMap<>(counters.toMap());
+            tenantStats.put("month", counters.month.toString());
+            tenants.put(tenant, tenantStats);
+        });
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("nodes", toMap(byNode));
+        stats.put("models", toMap(byModel));
+        stats.put("tenants", tenants);
+        stats.put("trackedSessions", bySession.estimatedSize());
+        stats.put("topSessions", bySession.asMap().entrySet().stream()
+                .sorted((left, right) -> Long.compare(right.getValue().total(), left.getValue().total()))
+                .limit(10)
+                .collect(LinkedHashMap::new, (map, entry) -> map.put(entry.getKey(), entry.getValue().toMap()), Map::putAll));
+        return stats;
+    }
+
+    /**
+     * 进入新的月份时替换为新的计数器
+     */
+    private TenantCounters tenantCounters(String tenant) {
+        final YearMonth month = YearMonth.now();
+        final TenantCounters current = byTenant.get(tenant);
+        if (current != null && current.month.equals(month)) {
+            return current;
+        }
+        return byTenant.compute(tenant, (key, counters) ->
+                counters == null || !counters.month.equals(month) ? new TenantCounters(month) : counters);
+    }
+
+    private static Map<String, Object> toMap(Map<String, Counters> counters) {
+        Map<String, Object> result = new TreeMap<>();
+        counters.forEach((key, value) -> result.put(key, value.toMap()));
+        return result;
+    }
+
+    private static class Counters {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder completionTokens = new LongAdder();
+        private final LongAdder cachedTokens = new LongAdder();
+
+        void add(long prompt, long completion, long cached) {
+            calls.increment();
+            promptTokens.add(prompt);
+            completionTokens.add(completion);
+            cachedTokens.add(cached);
+        }
+
+        long total() {
+            return promptTokens.sum() + completionTokens.sum();
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("calls", calls.sum());
+            map.put("promptTokens", promptTokens.sum());
+            map.put("completionTokens", completionTokens.sum());
+            map.put("cachedTokens", cachedTokens.sum());
+            map.put("totalTokens", total());
+            return map;
+        }
+    }
+
+    private static class TenantCounters extends Counters {
+        private final YearMonth month;
+
+        TenantCounters(YearMonth month) {
+            this.month = month;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.zavier.customer.support.agent.warmup;
+
+import com.github.zavier.customer.support.agent.CustomerSupportGraph;
+import com.github.zavier.customer.support.agent.docs.DocumentIngestion;
+import com.github.zavier.customer.support.agent.llm.ChatModelFactory;
+import com.github.zavier.customer.support.agent.llm.ModelRouter;
+import com.github.zavier.customer.support.config.WarmupProperties;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.bsc.langgraph4j.RunnableConfig;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 启动后预热：预建模型服务连接，并用桩模型完整执行若干次图（类加载、JSON Schema 生成、模板解析、JIT）。
+ * 在 ApplicationRunner 中同步执行，完成前应用不会进入 ACCEPTING_TRAFFIC 状态
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class AgentWarmup implements ApplicationRunner {
+
+    // 覆盖所有分支：搜索、Bug跟踪、直接回复、人工审核
+    private static final List<String> SAMPLES = List.of(
+            "如何修改登录密码？ #intent=QUESTION #urgency=LOW",
+            "导出报表时页面报错 #intent=BUG #urgency=MEDIUM",
+            "希望支持批量导入 #intent=FEATURE #urgency=LOW",
+            "多个系统集成后数据不一致 #intent=COMPLEX #urgency=MEDIUM",
+            "本月被重复扣费 #intent=BILLING #urgency=HIGH"
+    );
+
+    @Resource
+    private CustomerSupportGraph customerSupportGraph;
+    @Resource
+    private ChatModelFactory chatModelFactory;
+    @Resource
+    private WarmupProperties warmupProperties;
+    @Resource
+    private ApplicationContext applicationContext;
+    @Resource
+    private DocumentIngestion documentIngestion;
+
+    private volatile boolean completed;
+    private final Map<String, Object> report = new LinkedHashMap<>();
+
+    @Override
+    public void run(ApplicationArguments args) {
+        AvailabilityChangeEvent.publish(applicationContext, ReadinessState.REFUSING_TRAFFIC);
+        final long start = System.currentTimeMillis();
+        synchronized (report) {
+            report.put("jvmStartupMillis", ManagementFactory.getRuntimeMXBean().getUptime());
+        }
+
+        if (!warmupProperties.isEnabled()) {
+            completed = true;
+            return;
+        }
+
+        final int openedConnections = chatModelFactory.warmConnections(warmupProperties.getConnectTimeout());
+        final long connectionMillis = System.currentTimeMillis() - start;
+
+        // 文档索引首次构建完成后再执行图，预热覆盖真实的搜索路径
+        final long docsStart = System.currentTimeMillis();
+        final boolean docsIndexed = documentIngestion.awaitInitialIngestion(warmupProperties.getDocsTimeout());
+        final long docsMillis = System.currentTimeMillis() - docsStart;
+        if (!docsIndexed) {
+            log.warn("等待文档索引超时 timeout:{}", warmupProperties.getDocsTimeout());
+        }
+
+        final long graphStart = System.currentTimeMillis();
+        long firstIterationMillis = -1;
+        long lastIterationMillis = -1;
+        int failures = 0;
+        for (int i = 0; i < warmupProperties.getIterations(); i++) {
+            final long iterationStart = System.nanoTime();
+            try {
+                runSample(i);
+            } catch (Exception e) {
+                failures++;
+                log.warn("预热执行失败 iteration:{}", i, e);
+            }
+            lastIterationMillis = (System.nanoTime() - iterationStart) / 1_000_000;
+            if (firstIterationMillis < 0) {
+                firstIterationMillis = lastIterationMillis;
+            }
+        }
+        final long graphMillis = System.currentTimeMillis() - graphStart;
+
+        synchronized (report) {
+            report.put("openedConnections", openedConnections);
+            report.put("connectionWarmupMillis", connectionMillis);
+            report.put("docsIndexed", docsIndexed);
+            report.put("docsWaitMillis", docsMillis);
+            report.put("iterations", warmupProperties.getIterations());
+            report.put("failures", failures);
+            report.put("graphWarmupMillis", graphMillis);
+            report.put("firstIterationMillis", firstIterationMillis);
+            report.put("lastIterationMillis", lastIterationMillis);
+            report.put("totalWarmupMillis", System.currentTimeMillis() - start);
+            log.info("预热完成 {}", report);
+        }
+        completed = true;
+    }
+
+    /**
+     * 预热完成且文档索引已构建
+     */
+    public boolean isCompleted() {
+        return completed && documentIngestion.isInitialIngestionDone();
+    }
+
+    public Map<String, Object> report() {
+        synchronized (report) {
+            Map<String, Object> result = new LinkedHashMap<>(report);
+            result.put("completed", completed);
+            result.put("docsIndexReady", documentIngestion.isInitialIngestionDone());
+            return result;
+        }
+    }
+
+    private void runSample(int iteration) {
+        final RunnableConfig config = ModelRouter.withStubModel(RunnableConfig.builder()
+                .threadId("warmup-" + iteration)
+                .build());
+        final Map<String, Object> input = Map.of(
+                "messageContent", SAMPLES.get(iteration % SAMPLES.size()),
+                "userName", "warmup");
+
+        try {
+            customerSupportGraph.run(input, config);
+            if (customerSupportGraph.isInterrupt(config)) {
+                customerSupportGraph.resume(config, "approved");
+            }
+        } finally {
+            customerSupportGraph.release("warmup-" + iteration);
+        }
+    }
+}
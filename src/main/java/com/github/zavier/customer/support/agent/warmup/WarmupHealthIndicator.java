@@ -0,0 +1,22 @@
+package com.github.zavier.customer.support.agent.warmup;
+
+import jakarta.annotation.Resource;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * 加入 readiness 分组，预热和文档索引首次构建完成前报告 OUT_OF_SERVICE
+ */
+@Component("warmup")
+public class WarmupHealthIndicator implements HealthIndicator {
+
+    @Resource
+    private AgentWarmup agentWarmup;
+
+    @Override
+    public Health health() {
+        final Health.Builder builder = agentWarmup.isCompleted() ? Health.up() : Health.outOfService();
+        return builder.withDetails(agentWarmup.report()).build();
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.zavier.customer.support.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "customer-support.bug-tracking")
+public class BugTrackingProperties {
+
+    /**
+     * 估算的 Jaccard 相似度达到该值时视为同一个Bug
+     */
+    private double similarityThreshold = 0.5;
+
+    /**
+     * LSH 分段数与每段行数，签名长度为两者乘积
+     */
+    private int bands = 16;
+    private int rows = 4;
+
+    /**
+     * 文本按字符切分的 shingle 长度
+     */
+    private int shingleSize = 3;
+
+    /**
+     * 工单在最后一次上报后保持打开的时间
+     */
+    private Duration openDuration = Duration.ofHours(24);
+
+    private int maxOpenTickets = 10_000;
+}
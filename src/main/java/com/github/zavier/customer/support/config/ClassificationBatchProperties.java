@@ -0,0 +1,39 @@
+package com.github.zavier.customer.support.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "customer-support.classification-batch")
+public class ClassificationBatchProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * 一次调用最多分类的消息数
+     */
+    private int maxBatchSize = 8;
+
+    /**
+     * 收到第一条消息后最多等待的时间
+     */
+    private Duration maxWait = Duration.ofMillis(20);
+
+    /**
+     * 同时进行的批量调用数，超出时退回到逐条分类
+     */
+    private int maxConcurrentBatches = 4;
+
+    /**
+     * 每条消息的分类结果预留的回复 token 数，整批的回复上限按消息数计算
+     */
+    private int maxTokensPerMessage = 96;
+
+    /**
+     * 等待批量结果的最长时间（不含 maxWait），加上 maxWait 后需明显小于 classifyIntent 节点超时，
+     * 超时后由调用方逐条分类
+     */
+    private Duration timeout = Duration.ofSeconds(8);
+}
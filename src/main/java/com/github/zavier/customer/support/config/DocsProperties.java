@@ -0,0 +1,38 @@
+package com.github.zavier.customer.support.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "customer-support.docs")
+public class DocsProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 帮助文档目录，支持 .md/.markdown/.txt
+     */
+    private String directory = "docs";
+
+    /**
+     * 检查文档变更的间隔
+     */
+    private Duration scanInterval = Duration.ofSeconds(5);
+
+    /**
+     * 单个分块的最大字符数，按段落切分
+     */
+    private int chunkSize = 800;
+
+    /**
+     * 每次搜索返回的分块数
+     */
+    private int topK = 3;
+
+    /**
+     * 缓存的搜索结果数量
+     */
+    private int cacheSize = 1000;
+}
@@ -0,0 +1,52 @@
+package com.github.zavier.customer.support.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "customer-support.journal")
+public class JournalProperties {
+
+    /**
+     * 默认关闭，需要回放线上流量时再开启
+     */
+    private boolean enabled = false;
+
+    /**
+     * 日志段文件所在目录
+     */
+    private String directory = "journal";
+
+    /**
+     * 单个日志段文件大小，写满后切换到新文件
+     */
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+    /**
+     * 日志段保留时长，切换日志段时删除更早的文件
+     */
+    private Duration maxAge = Duration.ofDays(7);
+
+    /**
+     * 日志段总大小上限，超出后从最旧的文件开始删除
+     */
+    private DataSize maxTotalSize = DataSize.ofGigabytes(2);
+
+    /**
+     * 待写入事件上限，超出后直接丢弃，不阻塞请求线程
+     */
+    private int queueCapacity = 65_536;
+
+    /**
+     * 写入线程每批最多处理的事件数
+     */
+    private int batchSize = 512;
+
+    /**
+     * 队列为空时写入线程的休眠时间
+     */
+    private Duration flushInterval = Duration.ofMillis(10);
+}
@@ -0,0 +1,52 @@
+package com.github.zavier.customer.support.config;
+
+import com.github.zavier.customer.support.agent.llm.ChatModelFactory;
+import com.github.zavier.customer.support.agent.llm.HedgingChatModel;
+import com.github.zavier.customer.support.agent.llm.LlmEndpoint;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class LlmConfig {
+
+    /**
+     * 对冲/故障转移请求共用的有界线程池，不排队，用满时由 HedgingChatModel 退化为直接调用
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService llmHedgeExecutor(LlmProperties llmProperties) {
+        final AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(0, llmProperties.getHedge().getMaxThreads(),
+                60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "llm-hedge-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 未配置模型的节点使用该模型，默认端点之后依次是额外配置的端点
+     */
+    @Bean
+    @Primary
+    public HedgingChatModel hedgingChatModel(OpenAiChatModel openAiChatModel,
+                                             ChatModelFactory chatModelFactory,
+                                             LlmProperties llmProperties,
+                                             ExecutorService llmHedgeExecutor) {
+        List<LlmEndpoint> endpoints = new ArrayList<>();
+        endpoints.add(new LlmEndpoint("default", openAiChatModel, null));
+        endpoints.addAll(chatModelFactory.backupEndpoints((OpenAiChatOptions) openAiChatModel.getDefaultOptions()));
+
+        return new HedgingChatModel(endpoints, llmProperties.getHedge(), llmHedgeExecutor);
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.zavier.customer.support.config;
+
+import com.github.zavier.customer.support.agent.constant.Intent;
+import com.github.zavier.customer.support.agent.constant.Urgency;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.*;
+
+@Data
+@ConfigurationProperties(prefix = "customer-support.llm")
+public class LlmProperties {
+
+    /**
+     * 额外的 OpenAI 兼容端点，排在 spring.ai.openai 默认端点之后，用于对冲和故障转移
+     */
+    private List<Endpoint> endpoints = new ArrayList<>();
+
+    private Hedge hedge = new Hedge();
+
+    /**
+     * 模型配置，key 为配置名称
+     */
+    private Map<String, Profile> profiles = new LinkedHashMap<>();
+
+    /**
+     * 节点默认使用的模型配置，key 为节点名称，未配置的节点使用 spring.ai.openai 默认模型
+     */
+    private Map<String, String> nodes = new HashMap<>();
+
+    /**
+     * 路由规则，按顺序匹配，命中后覆盖节点默认的模型配置
+     */
+    private List<Route> routes = new ArrayList<>();
+
+    @Data
+    public static class Endpoint {
+        private String name;
+        private String baseUrl;
+        private String apiKey;
+        // 为空时沿用请求中的模型
+        private String model;
+    }
+
+    @Data
+    public static class Profile {
+        private String model;
+        // 为空时使用 spring.ai.openai.base-url / api-key
+        private String baseUrl;
+        private String apiKey;
+        private Double temperature;
+        private Integer maxTokens;
+        private Duration timeout = Duration.ofSeconds(60);
+    }
+
+    @Data
+    public static class Route {
+        private String node;
+        // 为空表示不限制
+        private Set<Intent> intents = EnumSet.noneOf(Intent.class);
+        private Set<Urgency> urgencies = EnumSet.noneOf(Urgency.class);
+        private String profile;
+    }
+
+    @Data
+    public static class Hedge {
+        private boolean enabled = false;
+        // 主请求耗时超过该分位数时发起对冲请求
+        private double percentile = 0.95;
+        // 对冲等待时间下限，样本不足时也使用该值
+        private Duration minDelay = Duration.ofSeconds(2);
+        // 对冲请求占总请求的最大比例
+        private double budgetRatio = 0.05;
+        // 连续失败多少次后标记端点不健康
+        private int failureThreshold = 3;
+        private Duration unhealthyCooldown = Duration.ofSeconds(30);
+        // 所有模型配置共享的请求线程数上限，用满后不再对冲
+        private int maxThreads = 64;
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.zavier.customer.support.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "customer-support.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 最多保留多少个令牌桶（会话桶和客户端桶合计）
+     */
+    private long maxBuckets = 200_000;
+
+    /**
+     * 桶空闲超过该时间后回收
+     */
+    private Duration idleTimeout = Duration.ofMinutes(10);
+
+    /**
+     * 单个聊天会话的配额
+     */
+    private Quota session = new Quota(10, 20);
+
+    /**
+     * 同一客户端地址所有会话合计的配额，需要比会话配额宽松，NAT 或代理后的多个客户会共用
+     */
+    private Quota client = new Quota(60, 120);
+
+    @Data
+    public static class Quota {
+        // 桶容量，即允许的突发请求数
+        private int capacity;
+        // 每分钟补充的令牌数
+        private int refillPerMinute;
+
+        public Quota() {
+        }
+
+        public Quota(int capacity, int refillPerMinute) {
+            this.capacity = capacity;
+            this.refillPerMinute = refillPerMinute;
+        }
+    }
+}
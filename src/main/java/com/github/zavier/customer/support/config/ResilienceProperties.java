@@ -0,0 +1,72 @@
+package com.github.zavier.customer.support.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "customer-support.resilience")
+public class ResilienceProperties {
+
+    /**
+     * 单次请求（run/resume）的整体截止时间
+     */
+    private Duration requestTimeout = Duration.ofSeconds(90);
+
+    /**
+     * 同时执行的节点调用上限，超过时直接降级而不是排队
+     */
+    private int maxConcurrentCalls = 64;
+
+    private NodePolicy defaults = new NodePolicy();
+
+    /**
+     * 按节点覆盖的策略，key 为节点名称，未配置的项沿用 defaults
+     */
+    private Map<String, NodeOverride> nodes = new HashMap<>();
+
+    public NodePolicy policy(String node) {
+        final NodeOverride override = nodes.get(node);
+        return override == null ? defaults : override.applyTo(defaults);
+    }
+
+    @Data
+    public static class NodePolicy {
+        // 节点超时，实际超时不超过请求剩余时间
+        private Duration timeout = Duration.ofSeconds(30);
+        // 失败（含慢调用）比例达到该值时熔断
+        private double failureRateThreshold = 0.5;
+        // 超过该耗时的调用计为慢调用
+        private Duration slowCallThreshold = Duration.ofSeconds(20);
+        // 统计最近多少次调用
+        private int windowSize = 20;
+        // 至少多少次调用后才计算失败比例
+        private int minimumCalls = 10;
+        // 熔断后多久进入半开状态
+        private Duration openDuration = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class NodeOverride {
+        private Duration timeout;
+        private Double failureRateThreshold;
+        private Duration slowCallThreshold;
+        private Integer windowSize;
+        private Integer minimumCalls;
+        private Duration openDuration;
+
+        NodePolicy applyTo(NodePolicy defaults) {
+            NodePolicy policy = new NodePolicy();
+            policy.setTimeout(timeout != null ? timeout : defaults.getTimeout());
+            policy.setFailureRateThreshold(failureRateThreshold != null ? failureRateThreshold : defaults.getFailureRateThreshold());
+            policy.setSlowCallThreshold(slowCallThreshold != null ? slowCallThreshold : defaults.getSlowCallThreshold());
+            policy.setWindowSize(windowSize != null ? windowSize : defaults.getWindowSize());
+            policy.setMinimumCalls(minimumCalls != null ? minimumCalls : defaults.getMinimumCalls());
+            policy.setOpenDuration(openDuration != null ? openDuration : defaults.getOpenDuration());
+            return policy;
+        }
+    }
+}
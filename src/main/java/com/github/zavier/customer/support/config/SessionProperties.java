@@ -0,0 +1,38 @@
+package com.github.zavier.customer.support.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "customer-support.session")
+public class SessionProperties {
+
+    /**
+     * 会话存储实现：off-heap 为堆外定长记录，caffeine 为原来的堆内缓存
+     */
+    private String store = "off-heap";
+
+    private int maxSessions = 1 << 20;
+
+    /**
+     * 会话数达到上限时，off-heap 存储一次淘汰的最久未访问会话数
+     */
+    private int evictionBatch = 1024;
+
+    /**
+     * 超过该时间没有访问就过期
+     */
+    private Duration idleTimeout = Duration.ofMinutes(30);
+
+    /**
+     * 会话最长保留时间
+     */
+    private Duration maxLifetime = Duration.ofHours(24);
+
+    /**
+     * 过期检查的时间轮刻度
+     */
+    private Duration tick = Duration.ofSeconds(1);
+}
@@ -0,0 +1,53 @@
+package com.github.zavier.customer.support.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "customer-support.token-budget")
+public class TokenBudgetProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 单个会话的 token 上限
+     */
+    private long sessionTokens = 50_000;
+
+    /**
+     * 会话用量在空闲超过该时间后回收
+     */
+    private Duration sessionIdleTimeout = Duration.ofHours(24);
+
+    /**
+     * 租户每月 token 上限，key 为租户名称，未配置的租户使用 defaultTenantMonthlyTokens
+     */
+    private Map<String, Long> tenantMonthlyTokens = new HashMap<>();
+
+    private long defaultTenantMonthlyTokens = 5_000_000;
+
+    /**
+     * 用户所属租户，key 为用户名，未配置的用户属于 defaultTenant
+     */
+    private Map<String, String> userTenants = new HashMap<>();
+
+    private String defaultTenant = "default";
+
+    /**
+     * 用量达到上限的该比例后限制回复长度
+     */
+    private double reduceRatio = 0.8;
+
+    private int reducedMaxTokens = 256;
+
+    /**
+     * 用量达到上限的该比例后改用 downgradeProfile 模型配置
+     */
+    private double downgradeRatio = 0.9;
+
+    private String downgradeProfile = "fast";
+}
@@ -0,0 +1,28 @@
+package com.github.zavier.customer.support.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "customer-support.warmup")
+public class WarmupProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 使用桩模型完整执行图的次数
+     */
+    private int iterations = 50;
+
+    /**
+     * 预建模型服务连接的超时时间
+     */
+    private Duration connectTimeout = Duration.ofSeconds(5);
+
+    /**
+     * 等待文档索引首次构建完成的最长时间，超时后继续预热，但 readiness 仍等待索引完成
+     */
+    private Duration docsTimeout = Duration.ofSeconds(60);
+}
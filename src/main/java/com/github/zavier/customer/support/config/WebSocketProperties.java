@@ -0,0 +1,39 @@
+package com.github.zavier.customer.support.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "customer-support.websocket")
+public class WebSocketProperties {
+
+    /**
+     * 处理 message/resume 请求的线程数
+     */
+    private int workerThreads = 64;
+
+    /**
+     * 等待处理的请求数上限，超出时返回 busy
+     */
+    private int queueCapacity = 1024;
+
+    /**
+     * 单个连接同时处理中的请求数上限
+     */
+    private int maxInFlightPerConnection = 8;
+
+    /**
+     * 超过该时间没有收到客户端任何帧（包括 ping）时关闭连接
+     */
+    private Duration heartbeatTimeout = Duration.ofSeconds(60);
+
+    /**
+     * 单次发送的最长阻塞时间和发送缓冲上限，超出时关闭慢连接
+     */
+    private Duration sendTimeLimit = Duration.ofSeconds(10);
+
+    private DataSize sendBufferSize = DataSize.ofKilobytes(512);
+}
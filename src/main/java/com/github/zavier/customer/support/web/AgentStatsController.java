@@ -0,0 +1,151 @@
+package com.github.zavier.customer.support.web;
+
+import com.github.zavier.customer.support.agent.CustomerSupportGraph;
+import com.github.zavier.customer.support.agent.batch.ClassificationBatcher;
+import com.github.zavier.customer.support.agent.bug.BugTicketStore;
+import com.github.zavier.customer.support.agent.docs.DocumentIngestion;
+import com.github.zavier.customer.support.agent.journal.ConversationJournal;
+import com.github.zavier.customer.support.agent.llm.ModelMetrics;
+import com.github.zavier.customer.support.agent.llm.ModelRouter;
+import com.github.zavier.customer.support.agent.resilience.NodeGuard;
+import com.github.zavier.customer.support.agent.usage.TokenBudget;
+import com.github.zavier.customer.support.agent.usage.TokenUsageMeter;
+import com.github.zavier.customer.support.agent.warmup.AgentWarmup;
+import com.github.zavier.customer.support.web.ratelimit.UserRateLimiter;
+import jakarta.annotation.Resource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/chat")
+@CrossOrigin(origins = "*")
+public class AgentStatsController {
+
+    @Resource
+    private ModelRouter modelRouter;
+    @Resource
+    private ModelMetrics modelMetrics;
+    @Resource
+    private NodeGuard nodeGuard;
+    @Resource
+    private CustomerSupportGraph customerSupportGraph;
+    @Resource
+    private AgentWarmup agentWarmup;
+    @Resource
+    private UserRateLimiter userRateLimiter;
+    @Resource
+    private BugTicketStore bugTicketStore;
+    @Resource
+    private ConversationJournal conversationJournal;
+    @Resource
+    private DocumentIngestion documentIngestion;
+    @Resource
+    private TokenUsageMeter tokenUsageMeter;
+    @Resource
+    private TokenBudget tokenBudget;
+    @Resource
+    private ClassificationBatcher classificationBatcher;
+    @Resource
+    private ChatWebSocketHandler chatWebSocketHandler;
+
+    /**
+     * 获取各模型配置的LLM端点统计信息
+     */
+    @GetMapping("/llm-stats")
+    public ResponseEntity<Map<String, Object>> getLlmStats() {
+        return ResponseEntity.ok(modelRouter.stats());
+    }
+
+    /**
+     * 按 节点/模型配置/模型 获取调用统计
+     */
+    @GetMapping("/model-stats")
+    public ResponseEntity<Map<String, Object>> getModelStats() {
+        return ResponseEntity.ok(modelMetrics.stats());
+    }
+
+    /**
+     * 获取各节点熔断器状态和降级次数
+     */
+    @GetMapping("/resilience-stats")
+    public ResponseEntity<Map<String, Object>> getResilienceStats() {
+        return ResponseEntity.ok(nodeGuard.stats());
+    }
+
+    /**
+     * 获取检查点大小和编解码耗时
+     */
+    @GetMapping("/checkpoint-stats")
+    public ResponseEntity<Map<String, Object>> getCheckpointStats() {
+        return ResponseEntity.ok(customerSupportGraph.checkpointStats());
+    }
+
+    /**
+     * 获取启动和预热耗时
+     */
+    @GetMapping("/warmup-stats")
+    public ResponseEntity<Map<String, Object>> getWarmupStats() {
+        return ResponseEntity.ok(agentWarmup.report());
+    }
+
+    /**
+     * 获取限流统计
+     */
+    @GetMapping("/rate-limit-stats")
+    public ResponseEntity<Map<String, Object>> getRateLimitStats() {
+        return ResponseEntity.ok(userRateLimiter.stats());
+    }
+
+    /**
+     * 获取Bug工单归并统计
+     */
+    @GetMapping("/bug-stats")
+    public ResponseEntity<Map<String, Object>> getBugStats() {
+        return ResponseEntity.ok(bugTicketStore.stats());
+    }
+
+    /**
+     * 获取会话日志写入统计
+     */
+    @GetMapping("/journal-stats")
+    public ResponseEntity<Map<String, Object>> getJournalStats() {
+        return ResponseEntity.ok(conversationJournal.stats());
+    }
+
+    /**
+     * 获取文档导入和索引统计
+     */
+    @GetMapping("/docs-stats")
+    public ResponseEntity<Map<String, Object>> getDocsStats() {
+        return ResponseEntity.ok(documentIngestion.stats());
+    }
+
+    /**
+     * 获取 token 用量和预算降级统计
+     */
+    @GetMapping("/token-stats")
+    public ResponseEntity<Map<String, Object>> getTokenStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(tokenUsageMeter.stats());
+        stats.put("budgetDecisions", tokenBudget.stats());
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * 获取分类微批统计
+     */
+    @GetMapping("/classification-batch-stats")
+    public ResponseEntity<Map<String, Object>> getClassificationBatchStats() {
+        return ResponseEntity.ok(classificationBatcher.stats());
+    }
+
+    /**
+     * 获取 WebSocket 连接和请求统计
+     */
+    @GetMapping("/ws-stats")
+    public ResponseEntity<Map<String, Object>> getWebSocketStats() {
+        return ResponseEntity.ok(chatWebSocketHandler.stats());
+    }
+}
@@ -0,0 +1,195 @@
+package com.github.zavier.customer.support.web;
+
+import com.github.zavier.customer.support.agent.CustomerSupportGraph;
+import com.github.zavier.customer.support.agent.MessageAgentState;
+import com.github.zavier.customer.support.agent.MessageClassification;
+import com.github.zavier.customer.support.agent.NodeProgress;
+import com.github.zavier.customer.support.web.ChatController.ChatMessage;
+import com.github.zavier.customer.support.web.ChatController.ChatSession;
+import com.github.zavier.customer.support.web.ChatController.SendMessageRequest;
+import com.github.zavier.customer.support.web.ratelimit.ClientIdentity;
+import com.github.zavier.customer.support.web.ratelimit.UserRateLimiter;
+import com.github.zavier.customer.support.web.session.SessionStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.bsc.langgraph4j.RunnableConfig;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * 聊天消息处理，REST 接口和 WebSocket 共用
+ */
+@Slf4j
+@Service
+public class ChatService {
+
+    @Resource
+    private CustomerSupportGraph customerSupportGraph;
+
+    @Resource
+    private ChatWebSocketHandler webSocketHandler;
+
+    @Resource
+    private UserRateLimiter userRateLimiter;
+
+    @Resource
+    private SessionStore sessionStore;
+
+    @PostConstruct
+    public void init() {
+        // 会话过期或清空后释放图的检查点，否则检查点随会话数一直增长
+        sessionStore.addRemovalListener(customerSupportGraph::release);
+    }
+
+    /**
+     * 处理用户消息，被限流时返回 rate_limited 状态的消息
+     */
+    public ChatMessage send(SendMessageRequest request, ClientIdentity identity) {
+        log.info("收到消息: {} from user: {}", request.getMessage(), request.getUserName());
+
+        // 创建或获取会话
+        String sessionId = request.getSessionId() != null ? request.getSessionId() : UUID.randomUUID().toString();
+        long currentTime = System.currentTimeMillis();
+
+        // 按会话限流，同一客户端地址另有总上限
+        long retryAfterMillis = userRateLimiter.tryAcquire(sessionId, identity);
+        if (retryAfterMillis > 0) {
+            ChatMessage limitedMessage = new ChatMessage();
+            limitedMessage.setId(UUID.randomUUID().toString());
+            limitedMessage.setContent("您的请求过于频繁，请稍后再试。");
+            limitedMessage.setType("assistant");
+            limitedMessage.setTimestamp(currentTime);
+            limitedMessage.setStatus("rate_limited");
+            limitedMessage.setRetryAfterMillis(retryAfterMillis);
+            return limitedMessage;
+        }
+
+        try {
+            // 创建或获取会话，访问时间在存储中原地更新
+            sessionStore.getOrCreate(sessionId, request.getUserName());
+
+            // 处理消息
+            Map<String, Object> input = Map.of(
+                    "messageContent", request.getMessage(),
+                    "userName", request.getUserName()
+            );
+
+            var invokeConfig = RunnableConfig.builder()
+                    .threadId(sessionId)
+                    .build();
+
+            Optional<MessageAgentState> stateOptional = customerSupportGraph.run(input, invokeConfig,
+                    progress -> sendProgress(sessionId, request.getUserName(), progress));
+
+            ChatMessage assistantMessage = new ChatMessage();
+            assistantMessage.setId(UUID.randomUUID().toString());
+            assistantMessage.setType("assistant");
+            assistantMessage.setTimestamp(System.currentTimeMillis());
+
+            if (stateOptional.isPresent()) {
+                MessageAgentState state = stateOptional.get();
+                assistantMessage.setContent(state.draftResponse());
+                assistantMessage.setClassification(state.classification().orElse(null));
+
+                // 检查是否需要人工审核（图在 humanReview 前中断，包括节点降级转人工的情况）
+                if (state.classification().isPresent()) {
+                    MessageClassification classification = state.classification().get();
+                    if (customerSupportGraph.isInterrupt(invokeConfig)) {
+                        assistantMessage.setStatus("waiting_human");
+                        sessionStore.setPausedForHuman(sessionId, true);
+                        log.info("消息需要人工审核: {}", request.getMessage());
+
+                        // 通过WebSocket发送人工审核通知
+                        ChatWebSocketHandler.ChatMessage wsMessage = new ChatWebSocketHandler.ChatMessage();
+                        wsMessage.setType("human_review");
+                        wsMessage.setSessionId(sessionId);
+                        wsMessage.setUserName(request.getUserName());
+                        wsMessage.setContent(state.draftResponse());
+                        wsMessage.setClassification(classification);
+                        wsMessage.setTimestamp(System.currentTimeMillis());
+                        webSocketHandler.broadcastMessage(wsMessage);
+                    } else {
+                        assistantMessage.setStatus("completed");
+                        sessionStore.setPausedForHuman(sessionId, false);
+                    }
+                } else {
+                    assistantMessage.setStatus("completed");
+                }
+            } else {
+                assistantMessage.setContent("抱歉，我无法处理您的消息。");
+                assistantMessage.setStatus("completed");
+            }
+
+            return assistantMessage;
+
+        } catch (Exception e) {
+            log.error("处理消息时发生错误", e);
+            ChatMessage errorMessage = new ChatMessage();
+            errorMessage.setId(UUID.randomUUID().toString());
+            errorMessage.setContent("抱歉，系统出现了一些问题，请稍后再试。");
+            errorMessage.setType("assistant");
+            errorMessage.setTimestamp(System.currentTimeMillis());
+            errorMessage.setStatus("error");
+            return errorMessage;
+        }
+    }
+
+    /**
+     * 人工反馈后恢复执行，会话不存在时返回空
+     */
+    public Optional<ChatMessage> resume(String sessionId, String feedback) {
+        log.info("恢复会话 {} 人工反馈: {}", sessionId, feedback);
+
+        Optional<ChatSession> sessionOptional = sessionStore.get(sessionId);
+        if (sessionOptional.isEmpty()) {
+            return Optional.empty();
+        }
+        ChatSession session = sessionOptional.get();
+
+        var invokeConfig = RunnableConfig.builder()
+                .threadId(sessionId)
+                .build();
+
+        Optional<MessageAgentState> stateOptional = customerSupportGraph.resume(invokeConfig, feedback,
+                progress -> sendProgress(sessionId, session.getUserName(), progress));
+
+        ChatMessage assistantMessage = new ChatMessage();
+        assistantMessage.setId(UUID.randomUUID().toString());
+        assistantMessage.setType("assistant");
+        assistantMessage.setTimestamp(System.currentTimeMillis());
+
+        if (stateOptional.isPresent()) {
+            MessageAgentState state = stateOptional.get();
+            assistantMessage.setContent(state.draftResponse());
+            assistantMessage.setStatus("completed");
+            sessionStore.setPausedForHuman(sessionId, false);
+        } else {
+            assistantMessage.setContent("无法处理人工反馈");
+            assistantMessage.setStatus("error");
+        }
+        return Optional.of(assistantMessage);
+    }
+
+    /**
+     * 通过调用方的WebSocket连接推送节点进度
+     */
+    private void sendProgress(String sessionId, String userName, NodeProgress progress) {
+        ChatWebSocketHandler.ChatMessage wsMessage = new ChatWebSocketHandler.ChatMessage();
+        wsMessage.setType("progress");
+        wsMessage.setSessionId(sessionId);
+        wsMessage.setUserName(userName);
+        wsMessage.setNode(progress.node());
+        wsMessage.setStage(progress.stage());
+        wsMessage.setDurationMs(progress.durationMs());
+        wsMessage.setElapsedMs(progress.elapsedMs());
+        if ("classified".equals(progress.stage())) {
+            wsMessage.setClassification(progress.state().classification().orElse(null));
+        }
+        wsMessage.setTimestamp(System.currentTimeMillis());
+        webSocketHandler.sendToChatSession(sessionId, wsMessage);
+    }
+}
@@ -2,39 +2,123 @@ package com.github.zavier.customer.support.web;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.zavier.customer.support.agent.MessageClassification;
+import com.github.zavier.customer.support.config.WebSocketProperties;
+import com.github.zavier.customer.support.web.ratelimit.ClientIdentity;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 @Slf4j
 @Component
 public class ChatWebSocketHandler implements WebSocketHandler {
 
+    // ChatService 依赖本类推送进度，延迟注入避免循环依赖
+    @Lazy
+    @Resource
+    private ChatService chatService;
+    @Resource
+    private WebSocketProperties webSocketProperties;
+
     private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
     private final Map<String, String> userSessionMap = new ConcurrentHashMap<>();
+    // 聊天会话ID -> WebSocket会话ID
+    private final Map<String, String> chatSessionMap = new ConcurrentHashMap<>();
+    // 聊天会话ID -> 等待执行的请求，存在时表示该会话已有任务在执行
+    private final Map<String, Queue<Runnable>> lanes = new ConcurrentHashMap<>();
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    private ThreadPoolExecutor workers;
+    private ScheduledExecutorService heartbeatChecker;
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder busy = new LongAdder();
+    private final LongAdder heartbeatTimeouts = new LongAdder();
+
     @Data
     public static class ChatMessage {
-        private String type; // "message", "typing", "human_review", "status"
+        private String type; // "message", "resume", "typing", "register", "ping", "pong", "ack", "reply", "busy", "human_review", "status", "progress"
         private String sessionId;
         private String userName;
         private String content;
         private String status;
         private MessageClassification classification;
         private long timestamp;
+        // progress 消息使用
+        private String node;
+        private String stage;
+        private long durationMs;
+        private long elapsedMs;
+        // message/resume 请求使用，回复时原样带回用于关联
+        private String clientMessageId;
+        private String messageId;
+        private Long retryAfterMillis;
+    }
+
+    /**
+     * 连接级状态：最后一次收到帧的时间和处理中的请求数
+     */
+    private static class Connection {
+        private volatile long lastSeen = System.currentTimeMillis();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        // 握手时确定的身份，用于限流
+        private final ClientIdentity identity;
+
+        Connection(ClientIdentity identity) {
+            this.identity = identity;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        final AtomicInteger counter = new AtomicInteger();
+        workers = new ThreadPoolExecutor(webSocketProperties.getWorkerThreads(), webSocketProperties.getWorkerThreads(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(webSocketProperties.getQueueCapacity()), r -> {
+            Thread thread = new Thread(r, "ws-chat-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        workers.allowCoreThreadTimeOut(true);
+
+        heartbeatChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long interval = Math.max(1000, webSocketProperties.getHeartbeatTimeout().toMillis() / 2);
+        heartbeatChecker.scheduleWithFixedDelay(this::closeIdleConnections, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        heartbeatChecker.shutdownNow();
+        workers.shutdownNow();
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         String sessionId = session.getId();
-        sessions.put(sessionId, session);
+        // 多个请求并发回复，发送需要串行化；发送缓慢的连接超出限制后会被关闭
+        sessions.put(sessionId, new ConcurrentWebSocketSessionDecorator(session,
+                (int) webSocketProperties.getSendTimeLimit().toMillis(),
+                (int) webSocketProperties.getSendBufferSize().toBytes()));
+        connections.put(sessionId, new Connection(ClientIdentity.of(session)));
         log.info("WebSocket连接建立: {}", sessionId);
 
         // 发送连接确认消息
@@ -42,7 +126,7 @@ public class ChatWebSocketHandler implements WebSocketHandler {
         confirmMessage.setType("status");
         confirmMessage.setContent("connected");
         confirmMessage.setTimestamp(System.currentTimeMillis());
-        sendMessage(session, confirmMessage);
+        sendMessageToSession(sessionId, confirmMessage);
     }
 
     @Override
@@ -52,15 +136,32 @@ public class ChatWebSocketHandler implements WebSocketHandler {
             String payload = message.getPayload().toString();
             ChatMessage wsMessage = objectMapper.readValue(payload, ChatMessage.class);
 
-            log.info("收到WebSocket消息: {}", wsMessage.getType());
+            final Connection connection = connections.get(sessionId);
+            if (connection != null) {
+                connection.lastSeen = System.currentTimeMillis();
+            }
+            if (!"ping".equals(wsMessage.getType())) {
+                log.info("收到WebSocket消息: {}", wsMessage.getType());
+            }
 
             switch (wsMessage.getType()) {
+                case "register":
+                    bindChatSession(sessionId, wsMessage);
+                    break;
                 case "typing":
+                    bindChatSession(sessionId, wsMessage);
                     handleTypingMessage(sessionId, wsMessage);
                     break;
+                case "ping":
+                    ChatMessage pong = new ChatMessage();
+                    pong.setType("pong");
+                    pong.setTimestamp(System.currentTimeMillis());
+                    sendMessageToSession(sessionId, pong);
+                    break;
                 case "message":
-                    // 这个通过REST API处理，这里只是记录
-                    log.info("用户消息: {}", wsMessage.getContent());
+                case "resume":
+                    bindChatSession(sessionId, wsMessage);
+                    submit(sessionId, connection, wsMessage);
                     break;
                 default:
                     log.warn("未知消息类型: {}", wsMessage.getType());
@@ -76,14 +177,18 @@ public class ChatWebSocketHandler implements WebSocketHandler {
         log.error("WebSocket传输错误", exception);
         String sessionId = session.getId();
         sessions.remove(sessionId);
+        connections.remove(sessionId);
         userSessionMap.remove(sessionId);
+        chatSessionMap.values().removeIf(sessionId::equals);
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
         String sessionId = session.getId();
         sessions.remove(sessionId);
+        connections.remove(sessionId);
         userSessionMap.remove(sessionId);
+        chatSessionMap.values().removeIf(sessionId::equals);
         log.info("WebSocket连接关闭: {} - {}", sessionId, closeStatus);
     }
 
@@ -99,6 +204,172 @@ public class ChatWebSocketHandler implements WebSocketHandler {
         }
     }
 
+    /**
+     * 异步处理，任务被接受后才发送 ack；单个连接处理中的请求数超出上限或线程池已满时返回 busy，由客户端稍后重试。
+     * 同一聊天会话的请求按到达顺序逐个执行，不同会话之间并行
+     */
+    private void submit(String sessionId, Connection connection, ChatMessage request) {
+        if (connection == null) {
+            return;
+        }
+        if (connection.inFlight.incrementAndGet() > webSocketProperties.getMaxInFlightPerConnection()) {
+            connection.inFlight.decrementAndGet();
+            rejectBusy(sessionId, request);
+            return;
+        }
+        // 保证 ack 先于 reply 发出
+        final CompletableFuture<Void> acked = new CompletableFuture<>();
+        final Runnable task = () -> {
+            try {
+                process(sessionId, connection, request, acked);
+            } finally {
+                connection.inFlight.decrementAndGet();
+            }
+        };
+        // 未带会话ID的请求会创建新会话，不需要排队
+        final String laneKey = request.getSessionId() != null ? request.getSessionId() : UUID.randomUUID().toString();
+        if (!enqueue(laneKey, task)) {
+            connection.inFlight.decrementAndGet();
+            rejectBusy(sessionId, request);
+            return;
+        }
+
+        ChatMessage ack = new ChatMessage();
+        ack.setType("ack");
+        ack.setClientMessageId(request.getClientMessageId());
+        ack.setSessionId(request.getSessionId());
+        ack.setTimestamp(System.currentTimeMillis());
+        sendMessageToSession(sessionId, ack);
+        acked.complete(null);
+    }
+
+    /**
+     * 加入聊天会话的执行队列，队列不存在时提交一个线程池任务依次执行，线程池拒绝时返回 false。
+     * 提交在 compute 中完成，请求不会排进一个没有线程执行的队列
+     */
+    private boolean enqueue(String laneKey, Runnable task) {
+        try {
+            lanes.compute(laneKey, (key, lane) -> {
+                if (lane == null) {
+                    workers.execute(() -> drain(laneKey));
+                    lane = new ArrayDeque<>();
+                }
+                lane.add(task);
+                return lane;
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private void drain(String laneKey) {
+        while (true) {
+            final Runnable[] next = new Runnable[1];
+            // 队列取空时在同一个原子操作中移除，之后到达的请求会重新提交
+            lanes.computeIfPresent(laneKey, (key, lane) -> {
+                next[0] = lane.poll();
+                return next[0] == null ? null : lane;
+            });
+            if (next[0] == null) {
+                return;
+            }
+            try {
+                next[0].run();
+            } catch (RuntimeException e) {
+                // 不能中断队列，否则同一会话之后的请求不会再执行
+                log.error("处理WebSocket请求时发生错误 session:{}", laneKey, e);
+            }
+        }
+    }
+
+    private void process(String sessionId, Connection connection, ChatMessage request, CompletableFuture<Void> acked) {
+        ChatController.ChatMessage result;
+        try {
+            if ("resume".equals(request.getType())) {
+                result = chatService.resume(request.getSessionId(), request.getContent())
+                        .orElseGet(() -> errorMessage("会话不存在或已过期"));
+            } else {
+                ChatController.SendMessageRequest sendRequest = new ChatController.SendMessageRequest();
+                sendRequest.setMessage(request.getContent());
+                sendRequest.setUserName(request.getUserName());
+                sendRequest.setSessionId(request.getSessionId());
+                result = chatService.send(sendRequest, connection.identity);
+            }
+        } catch (Exception e) {
+            log.error("处理WebSocket请求时发生错误 type:{}", request.getType(), e);
+            result = errorMessage("抱歉，系统出现了一些问题，请稍后再试。");
+        }
+        handled.increment();
+
+        ChatMessage reply = new ChatMessage();
+        reply.setType("reply");
+        reply.setClientMessageId(request.getClientMessageId());
+        reply.setMessageId(result.getId());
+        reply.setSessionId(request.getSessionId());
+        reply.setContent(result.getContent());
+        reply.setStatus(result.getStatus());
+        reply.setClassification(result.getClassification());
+        reply.setRetryAfterMillis(result.getRetryAfterMillis());
+        reply.setTimestamp(result.getTimestamp());
+        acked.join();
+        sendMessageToSession(sessionId, reply);
+    }
+
+    private void rejectBusy(String sessionId, ChatMessage request) {
+        busy.increment();
+        ChatMessage message = new ChatMessage();
+        message.setType("busy");
+        message.setClientMessageId(request.getClientMessageId());
+        message.setSessionId(request.getSessionId());
+        message.setTimestamp(System.currentTimeMillis());
+        sendMessageToSession(sessionId, message);
+    }
+
+    private static ChatController.ChatMessage errorMessage(String content) {
+        ChatController.ChatMessage message = new ChatController.ChatMessage();
+        message.setType("assistant");
+        message.setContent(content);
+        message.setStatus("error");
+        message.setTimestamp(System.currentTimeMillis());
+        return message;
+    }
+
+    private void closeIdleConnections() {
+        final long deadline = System.currentTimeMillis() - webSocketProperties.getHeartbeatTimeout().toMillis();
+        connections.forEach((sessionId, connection) -> {
+            // 有处理中的请求时客户端可能只是在等待回复
+            if (connection.lastSeen < deadline && connection.inFlight.get() == 0) {
+                final WebSocketSession session = sessions.get(sessionId);
+                if (session != null) {
+                    heartbeatTimeouts.increment();
+                    log.info("WebSocket心跳超时，关闭连接: {}", sessionId);
+                    try {
+                        session.close(CloseStatus.SESSION_NOT_RELIABLE);
+                    } catch (IOException e) {
+                        log.warn("关闭WebSocket连接失败: {}", sessionId, e);
+                    }
+                }
+            }
+        });
+    }
+
+    private void bindChatSession(String sessionId, ChatMessage message) {
+        if (message.getSessionId() != null) {
+            chatSessionMap.put(message.getSessionId(), sessionId);
+        }
+    }
+
+    /**
+     * 发送给聊天会话对应的WebSocket连接，未建立连接时忽略
+     */
+    public void sendToChatSession(String chatSessionId, ChatMessage message) {
+        final String sessionId = chatSessionMap.get(chatSessionId);
+        if (sessionId != null) {
+            sendMessageToSession(sessionId, message);
+        }
+    }
+
     public void broadcastMessage(ChatMessage message) {
         sessions.values().forEach(session -> {
             try {
@@ -126,7 +397,8 @@ public class ChatWebSocketHandler implements WebSocketHandler {
                 String jsonMessage = objectMapper.writeValueAsString(message);
                 session.sendMessage(new TextMessage(jsonMessage));
             }
-        } catch (IOException e) {
+        } catch (IOException | SessionLimitExceededException e) {
+            // 发送缓冲超限时连接已被关闭
             log.error("发送WebSocket消息时发生错误", e);
         }
     }
@@ -134,4 +406,16 @@ public class ChatWebSocketHandler implements WebSocketHandler {
     public int getActiveSessionCount() {
         return sessions.size();
     }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("connections", sessions.size());
+        stats.put("inFlight", connections.values().stream().mapToInt(connection -> connection.inFlight.get()).sum());
+        stats.put("queued", workers.getQueue().size());
+        stats.put("busySessions", lanes.size());
+        stats.put("handled", handled.sum());
+        stats.put("busy", busy.sum());
+        stats.put("heartbeatTimeouts", heartbeatTimeouts.sum());
+        return stats;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.github.zavier.customer.support.web.ratelimit;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+
+/**
+ * 服务端确认的客户端地址，用于按客户端限流。
+ * 经过负载均衡或代理时由 server.forward-headers-strategy 从 X-Forwarded-For 还原真实地址，
+ * 请求体中的 userName 由客户端填写，不参与限流
+ */
+public record ClientIdentity(String remoteAddress) {
+
+    private static final String UNKNOWN = "unknown";
+
+    public static ClientIdentity of(HttpServletRequest request) {
+        return new ClientIdentity(request.getRemoteAddr() == null ? UNKNOWN : request.getRemoteAddr());
+    }
+
+    public static ClientIdentity of(WebSocketSession session) {
+        final InetSocketAddress address = session.getRemoteAddress();
+        if (address == null) {
+            return new ClientIdentity(UNKNOWN);
+        }
+        return new ClientIdentity(address.getAddress() == null ? address.getHostString() : address.getAddress().getHostAddress());
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.zavier.customer.support.web.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶，状态打包在一个 long 中通过 CAS 更新：
+ * 高 40 位为上次补充时间（相对创建时间的毫秒数），低 24 位为令牌数（千分之一令牌为单位）
+ */
+public class TokenBucket {
+
+    private static final int TOKEN_BITS = 24;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long SCALE = 1000;
+    // 低 24 位能表示的最大容量
+    public static final int MAX_CAPACITY = (int) (TOKEN_MASK / SCALE);
+
+    private final long createdAt;
+    private final long capacity;
+    private final double refillPerMillis;
+    private final AtomicLong state;
+
+    public TokenBucket(int capacity, int refillPerMinute, long now) {
+        this.createdAt = now;
+        this.capacity = Math.min(capacity, MAX_CAPACITY) * SCALE;
+        this.refillPerMillis = refillPerMinute * SCALE / 60_000.0;
+        this.state = new AtomicLong(pack(0, this.capacity));
+    }
+
+    /**
+     * 尝试获取一个令牌，成功返回 0，否则返回需要等待的毫秒数
+     */
+    public long tryAcquire(long now) {
+        final long elapsedNow = now - createdAt;
+        while (true) {
+            final long current = state.get();
+            final long last = current >>> TOKEN_BITS;
+            final long tokens = current & TOKEN_MASK;
+
+            final long refill = (long) (Math.max(0, elapsedNow - last) * refillPerMillis);
+            final long available = Math.min(capacity, tokens + refill);
+            if (available < SCALE) {
+                if (refillPerMillis <= 0) {
+                    return Long.MAX_VALUE;
+                }
+                return (long) Math.ceil((SCALE - available) / refillPerMillis);
+            }
+            // 没有补充令牌时保留原时间，避免丢失不足一个单位的累积
+            final long newLast = refill > 0 ? elapsedNow : last;
+            if (state.compareAndSet(current, pack(newLast, available - SCALE))) {
+                return 0;
+            }
+        }
+    }
+
+    private static long pack(long last, long tokens) {
+        return (last << TOKEN_BITS) | (tokens & TOKEN_MASK);
+    }
+}
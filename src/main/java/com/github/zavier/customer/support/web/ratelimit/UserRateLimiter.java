@@ -0,0 +1,88 @@
+package com.github.zavier.customer.support.web.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.zavier.customer.support.config.RateLimitProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 令牌桶限流，避免单个会话耗尽模型服务配额：
+ * 每个聊天会话一个桶，同一客户端地址再共享一个较宽松的桶，防止通过不断更换 sessionId 绕过会话限流
+ * <p>
+ * 令牌桶放在有容量上限、空闲过期的 Caffeine 缓存中，桶本身通过 CAS 无锁更新
+ */
+@Slf4j
+@Component
+public class UserRateLimiter {
+
+    @Resource
+    private RateLimitProperties rateLimitProperties;
+
+    private Cache<String, TokenBucket> buckets;
+    private final ScopeCounters sessionCounters = new ScopeCounters();
+    private final ScopeCounters clientCounters = new ScopeCounters();
+
+    @PostConstruct
+    public void init() {
+        buckets = Caffeine.newBuilder()
+                .expireAfterAccess(rateLimitProperties.getIdleTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .maximumSize(rateLimitProperties.getMaxBuckets())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 先检查会话桶，再检查客户端桶，成功返回 0，被限流时返回建议的等待毫秒数
+     */
+    public long tryAcquire(String sessionId, ClientIdentity client) {
+        if (!rateLimitProperties.isEnabled()) {
+            return 0;
+        }
+        final long now = System.currentTimeMillis();
+        final long sessionWait = acquire("session:" + sessionId, rateLimitProperties.getSession(), now, sessionCounters);
+        if (sessionWait > 0) {
+            log.warn("会话请求被限流 session:{} client:{} retryAfter:{}ms", sessionId, client.remoteAddress(), sessionWait);
+            return sessionWait;
+        }
+        final long clientWait = acquire("client:" + client.remoteAddress(), rateLimitProperties.getClient(), now, clientCounters);
+        if (clientWait > 0) {
+            log.warn("客户端请求被限流 session:{} client:{} retryAfter:{}ms", sessionId, client.remoteAddress(), clientWait);
+        }
+        return clientWait;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", rateLimitProperties.isEnabled());
+        stats.put("trackedBuckets", buckets.estimatedSize());
+        stats.put("evictions", buckets.stats().evictionCount());
+        stats.put("session", sessionCounters.stats());
+        stats.put("client", clientCounters.stats());
+        return stats;
+    }
+
+    private long acquire(String key, RateLimitProperties.Quota quota, long now, ScopeCounters counters) {
+        final TokenBucket bucket = buckets.get(key,
+                k -> new TokenBucket(quota.getCapacity(), quota.getRefillPerMinute(), now));
+        final long waitMillis = bucket.tryAcquire(now);
+        (waitMillis == 0 ? counters.allowed : counters.rejected).increment();
+        return waitMillis;
+    }
+
+    private static class ScopeCounters {
+        private final LongAdder allowed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        Map<String, Object> stats() {
+            return Map.of("allowed", allowed.sum(), "rejected", rejected.sum());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.github.zavier.customer.support.web.session;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.zavier.customer.support.config.SessionProperties;
+import com.github.zavier.customer.support.web.ChatController.ChatSession;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 基于 Caffeine 的堆内会话存储，会话数量较少时使用
+ */
+public class CaffeineSessionStore implements SessionStore {
+
+    private final Cache<String, ChatSession> cache;
+    private final List<Consumer<String>> removalListeners = new CopyOnWriteArrayList<>();
+
+    public CaffeineSessionStore(SessionProperties properties) {
+        this.cache = Caffeine.newBuilder()
+                // 基于访问时间的过期
+                .expireAfterAccess(properties.getIdleTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                // 基于写入时间的过期
+                .expireAfterWrite(properties.getMaxLifetime().toMillis(), TimeUnit.MILLISECONDS)
+                .maximumSize(properties.getMaxSessions())
+                .removalListener((String sessionId, ChatSession session, RemovalCause cause) -> {
+                    if (sessionId != null && cause != RemovalCause.REPLACED) {
+                        removalListeners.forEach(listener -> listener.accept(sessionId));
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public ChatSession getOrCreate(String sessionId, String userName) {
+        final long now = System.currentTimeMillis();
+        ChatSession session = cache.get(sessionId, id -> {
+            ChatSession newSession = new ChatSession();
+            newSession.setSessionId(id);
+            newSession.setUserName(userName);
+            newSession.setCreationTime(now);
+            return newSession;
+        });
+        session.setLastAccessTime(now);
+        return copy(session);
+    }
+
+    @Override
+    public Optional<ChatSession> get(String sessionId) {
+        ChatSession session = cache.getIfPresent(sessionId);
+        if (session == null) {
+            return Optional.empty();
+        }
+        session.setLastAccessTime(System.currentTimeMillis());
+        return Optional.of(copy(session));
+    }
+
+    @Override
+    public boolean setPausedForHuman(String sessionId, boolean paused) {
+        ChatSession session = cache.getIfPresent(sessionId);
+        if (session == null) {
+            return false;
+        }
+        session.setPausedForHuman(paused);
+        session.setLastAccessTime(System.currentTimeMillis());
+        return true;
+    }
+
+    @Override
+    public boolean setTyping(String sessionId, boolean typing) {
+        ChatSession session = cache.getIfPresent(sessionId);
+        if (session == null) {
+            return false;
+        }
+        session.setTyping(typing);
+        session.setLastAccessTime(System.currentTimeMillis());
+        return true;
+    }
+
+    @Override
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    @Override
+    public long pausedForHumanCount() {
+        return cache.asMap().values().stream()
+                .filter(ChatSession::isPausedForHuman)
+                .count();
+    }
+
+    @Override
+    public long clear() {
+        final long before = cache.estimatedSize();
+        cache.invalidateAll();
+        return before - cache.estimatedSize();
+    }
+
+    @Override
+    public void addRemovalListener(Consumer<String> listener) {
+        removalListeners.add(listener);
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        var cacheStats = cache.stats();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "caffeine");
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("missRate", cacheStats.missRate());
+        stats.put("requestCount", cacheStats.requestCount());
+        stats.put("size", cache.estimatedSize());
+        stats.put("evictions", cacheStats.evictionCount());
+        return stats;
+    }
+
+    /**
+     * 返回快照，避免调用方修改缓存中的对象
+     */
+    private static ChatSession copy(ChatSession session) {
+        ChatSession copy = new ChatSession();
+        copy.setSessionId(session.getSessionId());
+        copy.setUserName(session.getUserName());
+        copy.setPausedForHuman(session.isPausedForHuman());
+        copy.setTyping(session.isTyping());
+        copy.setLastAccessTime(session.getLastAccessTime());
+        copy.setCreationTime(session.getCreationTime());
+        return copy;
+    }
+}
@@ -0,0 +1,872 @@
+package com.github.zavier.customer.support.web.session;
+
+import com.github.zavier.customer.support.config.SessionProperties;
+import com.github.zavier.customer.support.web.ChatController.ChatSession;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * 堆外定长记录的会话存储，会话数量增长不会增加堆上对象：
+ * <ul>
+ *     <li>记录按 slab 分配在直接内存中，最后访问时间和标志位通过 VarHandle 原地无锁更新</li>
+ *     <li>sessionId 到记录位置的索引是一个开放寻址的 int 数组，查找使用 StampedLock 乐观读</li>
+ *     <li>过期由时间轮清理，访问时不调整时间轮，到期时检查实际的访问时间，未过期的重新放入时间轮</li>
+ *     <li>会话数达到上限时先提前复用隔离期中的位置，所有位置都是存活会话时，扫描一次淘汰最后访问时间最早的一批会话</li>
+ * </ul>
+ * 创建和过期等结构变更在写锁下进行。状态字的高位是记录的版本号，每次释放记录时加一，
+ * 无锁读写在读取状态字之后确认 sessionId，完成后再确认版本号未变，位置被释放或复用时重新查找
+ */
+@Slf4j
+public class OffHeapSessionStore implements SessionStore, AutoCloseable {
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    // 记录布局
+    private static final int RECORD_BYTES = 96;
+    private static final int LAST_ACCESS = 0;
+    private static final int CREATION = 8;
+    private static final int USER_ID = 16;
+    private static final int FLAGS = 20;
+    private static final int SCHEDULED_TICK = 24;
+    private static final int ID_LENGTH = 28;
+    private static final int ID_BYTES = 29;
+    public static final int MAX_ID_BYTES = RECORD_BYTES - ID_BYTES;
+
+    // 状态字：低 8 位为标志位，高 24 位为版本号
+    private static final int IN_USE = 1;
+    private static final int PAUSED_FOR_HUMAN = 1 << 1;
+    private static final int TYPING = 1 << 2;
+    private static final int FLAG_BITS = 8;
+    private static final int FLAG_MASK = (1 << FLAG_BITS) - 1;
+
+    private static final int SLAB_SHIFT = 16;
+    private static final int SLAB_RECORDS = 1 << SLAB_SHIFT;
+    private static final int SLAB_MASK = SLAB_RECORDS - 1;
+
+    // 索引中的空位和删除标记，其他值为 slot + 1
+    private static final int EMPTY = 0;
+    private static final int DELETED = -1;
+
+    private static final int WHEEL_SIZE = 4096;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int NO_USER = -1;
+
+    private final int maxSessions;
+    private final int evictionBatch;
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final long tickMillis;
+    private final LongSupplier clock;
+
+    private final AtomicReferenceArray<ByteBuffer> slabs;
+    private final StampedLock lock = new StampedLock();
+
+    // 以下字段在写锁下修改
+    private volatile int[] index;
+    private int tombstones;
+    private volatile int highWater;
+    private final IntList freeSlots = new IntList();
+    // 释放的位置先进入 quarantine，经过两次清理（至少一个刻度）后才复用，减少无锁访问遇到版本变化而重试
+    private IntList quarantine = new IntList();
+    private IntList cooling = new IntList();
+    private final IntList[] wheel = new IntList[WHEEL_SIZE];
+    private long lastSweptTick;
+    private final Map<String, InternedUser> users = new HashMap<>();
+    private final IntList freeUserIds = new IntList();
+    private int userSequence;
+
+    private final AtomicInteger size = new AtomicInteger();
+    // 无锁读取会话时按 id 取用户名
+    private final Map<Integer, String> userNames = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> removalListeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder earlyReuses = new LongAdder();
+    private final LongAdder staleReads = new LongAdder();
+    private volatile long indexRebuilds;
+    private volatile long lastSweepMicros;
+
+    private final ScheduledExecutorService sweeper;
+
+    public OffHeapSessionStore(SessionProperties properties) {
+        this(properties, System::currentTimeMillis, true);
+    }
+
+    /**
+     * @param startSweeper 为 false 时不启动后台清理线程，由调用方执行 {@link #sweep()}，用于测试
+     */
+    OffHeapSessionStore(SessionProperties properties, LongSupplier clock, boolean startSweeper) {
+        this.maxSessions = properties.getMaxSessions();
+        this.evictionBatch = Math.max(1, Math.min(properties.getEvictionBatch(), maxSessions));
+        this.idleTimeoutMillis = properties.getIdleTimeout().toMillis();
+        this.maxLifetimeMillis = properties.getMaxLifetime().toMillis();
+        this.tickMillis = Math.max(1, properties.getTick().toMillis());
+        this.clock = clock;
+        this.slabs = new AtomicReferenceArray<>((maxSessions + SLAB_RECORDS - 1) / SLAB_RECORDS);
+        this.index = new int[indexCapacity(maxSessions)];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new IntList();
+        }
+        this.lastSweptTick = clock.getAsLong() / tickMillis;
+
+        if (!startSweeper) {
+            this.sweeper = null;
+            return;
+        }
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweepSafely, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public ChatSession getOrCreate(String sessionId, String userName) {
+        final byte[] id = encode(sessionId);
+        while (true) {
+            final long now = clock.getAsLong();
+            long located = locate(id);
+            boolean created = false;
+            if (located < 0) {
+                final List<String> removed = new ArrayList<>();
+                final long stamp = lock.writeLock();
+                try {
+                    int slot = findLocked(id);
+                    if (slot < 0) {
+                        slot = insert(id, userName, now, removed);
+                        created = slot >= 0;
+                    }
+                    if (slot >= 0) {
+                        located = located(slot, (int) INTS.getOpaque(slab(slot), offset(slot) + FLAGS));
+                    }
+                } finally {
+                    lock.unlockWrite(stamp);
+                    notifyRemoved(removed);
+                }
+                if (located < 0) {
+                    // 所有位置都是存活的会话
+                    evict();
+                    continue;
+                }
+            }
+            final int slot = slotOf(located);
+            final ByteBuffer slab = slab(slot);
+            final int offset = offset(slot);
+            touch(slab, offset, stateOf(located), now);
+            final ChatSession session = snapshot(sessionId, slab, offset, stateOf(located));
+            if (session != null) {
+                if (!created) {
+                    hits.increment();
+                }
+                return session;
+            }
+            staleReads.increment();
+        }
+    }
+
+    @Override
+    public Optional<ChatSession> get(String sessionId) {
+        final byte[] id = encode(sessionId);
+        while (true) {
+            final long located = locate(id);
+            if (located < 0) {
+                misses.increment();
+                return Optional.empty();
+            }
+            final int slot = slotOf(located);
+            final ByteBuffer slab = slab(slot);
+            final int offset = offset(slot);
+            touch(slab, offset, stateOf(located), clock.getAsLong());
+            final ChatSession session = snapshot(sessionId, slab, offset, stateOf(located));
+            if (session != null) {
+                hits.increment();
+                return Optional.of(session);
+            }
+            staleReads.increment();
+        }
+    }
+
+    @Override
+    public boolean setPausedForHuman(String sessionId, boolean paused) {
+        return updateFlag(sessionId, PAUSED_FOR_HUMAN, paused);
+    }
+
+    @Override
+    public boolean setTyping(String sessionId, boolean typing) {
+        return updateFlag(sessionId, TYPING, typing);
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    @Override
+    public long pausedForHumanCount() {
+        final int limit = highWater;
+        long count = 0;
+        for (int slot = 0; slot < limit; slot++) {
+            final int state = (int) INTS.getOpaque(slab(slot), offset(slot) + FLAGS);
+            if ((state & (IN_USE | PAUSED_FOR_HUMAN)) == (IN_USE | PAUSED_FOR_HUMAN)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long clear() {
+        final List<String> removed = new ArrayList<>();
+        final long stamp = lock.writeLock();
+        try {
+            for (int slot = 0; slot < highWater; slot++) {
+                if (((int) INTS.getOpaque(slab(slot), offset(slot) + FLAGS) & IN_USE) != 0) {
+                    removed.add(release(slot, quarantine));
+                }
+            }
+            index = new int[index.length];
+            tombstones = 0;
+            for (IntList bucket : wheel) {
+                bucket.clear();
+            }
+            return removed.size();
+        } finally {
+            lock.unlockWrite(stamp);
+            notifyRemoved(removed);
+        }
+    }
+
+    @Override
+    public void addRemovalListener(Consumer<String> listener) {
+        removalListeners.add(listener);
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        final long hitCount = hits.sum();
+        final long missCount = misses.sum();
+        final long requests = hitCount + missCount;
+        int allocatedSlabs = 0;
+        for (int i = 0; i < slabs.length(); i++) {
+            if (slabs.get(i) != null) {
+                allocatedSlabs++;
+            }
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "off-heap");
+        stats.put("hitRate", requests == 0 ? 1.0 : (double) hitCount / requests);
+        stats.put("missRate", requests == 0 ? 0.0 : (double) missCount / requests);
+        stats.put("requestCount", requests);
+        stats.put("size", size.get());
+        stats.put("maxSessions", maxSessions);
+        stats.put("expirations", expirations.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("earlyReuses", earlyReuses.sum());
+        stats.put("staleReads", staleReads.sum());
+        stats.put("offHeapBytes", (long) allocatedSlabs * SLAB_RECORDS * RECORD_BYTES);
+        stats.put("indexBytes", (long) index.length * Integer.BYTES);
+        stats.put("indexRebuilds", indexRebuilds);
+        stats.put("internedUsers", userNames.size());
+        stats.put("lastSweepMicros", lastSweepMicros);
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * 释放隔离期已满的位置，并清理到期的会话
+     */
+    void sweep() {
+        final long start = System.nanoTime();
+        final List<String> expired = new ArrayList<>();
+        final long stamp = lock.writeLock();
+        try {
+            freeSlots.addAll(cooling);
+            cooling.clear();
+            final IntList released = cooling;
+            cooling = quarantine;
+            quarantine = released;
+            sweepLocked(clock.getAsLong(), expired);
+        } finally {
+            lock.unlockWrite(stamp);
+            notifyRemoved(expired);
+        }
+        lastSweepMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+    }
+
+    private boolean updateFlag(String sessionId, int flag, boolean value) {
+        final byte[] id = encode(sessionId);
+        while (true) {
+            final long located = locate(id);
+            if (located < 0) {
+                return false;
+            }
+            final ByteBuffer slab = slab(slotOf(located));
+            final int offset = offset(slotOf(located));
+            final int generation = generation(stateOf(located));
+            touch(slab, offset, stateOf(located), clock.getAsLong());
+            // 状态字包含版本号，位置被复用后 CAS 失败，不会改到其他会话上
+            int state = stateOf(located);
+            while ((state & IN_USE) != 0 && generation(state) == generation) {
+                final int updated = value ? state | flag : state & ~flag;
+                if (state == updated || INTS.compareAndSet(slab, offset + FLAGS, state, updated)) {
+                    return true;
+                }
+                state = (int) INTS.getVolatile(slab, offset + FLAGS);
+            }
+            staleReads.increment();
+        }
+    }
+
+    /**
+     * 无锁定位会话记录，返回位置和读取到的状态字，不存在时返回 -1。
+     * 先读取状态字再确认 sessionId，之后只要版本号不变，记录就属于该会话
+     */
+    private long locate(byte[] id) {
+        while (true) {
+            final int slot = find(id);
+            if (slot < 0) {
+                return -1;
+            }
+            final int state = (int) INTS.getAcquire(slab(slot), offset(slot) + FLAGS);
+            if ((state & IN_USE) != 0 && matches(slot, id)) {
+                return located(slot, state);
+            }
+            // 查找之后位置被释放或复用
+            staleReads.increment();
+        }
+    }
+
+    /**
+     * 刷新最后访问时间，版本号变化说明位置已被释放，不再写入。
+     * 检查与 CAS 之间位置被复用时，新会话的创建时间与读取到的访问时间相同才会写入，此时写入的时间只相差不到一毫秒
+     */
+    private void touch(ByteBuffer slab, int offset, int state, long now) {
+        final long lastAccess = (long) LONGS.getVolatile(slab, offset + LAST_ACCESS);
+        if (lastAccess < now && generation((int) INTS.getVolatile(slab, offset + FLAGS)) == generation(state)) {
+            LONGS.compareAndSet(slab, offset + LAST_ACCESS, lastAccess, now);
+        }
+    }
+
+    /**
+     * 乐观读查找，期间有结构变更时退化为读锁
+     */
+    private int find(byte[] id) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            final int slot = findLocked(id);
+            if (lock.validate(stamp)) {
+                return slot;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return findLocked(id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int findLocked(byte[] id) {
+        final int[] table = index;
+        final int mask = table.length - 1;
+        for (int i = hash(id) & mask, probes = 0; probes < table.length; i = (i + 1) & mask, probes++) {
+            final int entry = table[i];
+            if (entry == EMPTY) {
+                return -1;
+            }
+            if (entry != DELETED && matches(entry - 1, id)) {
+                return entry - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return 没有可用位置时返回 -1
+     */
+    private int insert(byte[] id, String userName, long now, List<String> removed) {
+        final int slot = allocateSlot(now, removed);
+        if (slot < 0) {
+            return -1;
+        }
+        final ByteBuffer slab = slab(slot);
+        final int offset = offset(slot);
+        // 释放时已经递增版本号，这里保留版本号并置为使用中
+        final int state = (int) INTS.getOpaque(slab, offset + FLAGS);
+        LONGS.setOpaque(slab, offset + LAST_ACCESS, now);
+        LONGS.setOpaque(slab, offset + CREATION, now);
+        INTS.setOpaque(slab, offset + USER_ID, internUser(userName));
+        slab.put(offset + ID_LENGTH, (byte) id.length);
+        slab.put(offset + ID_BYTES, id);
+        INTS.setRelease(slab, offset + FLAGS, (state & ~FLAG_MASK) | IN_USE);
+
+        final int[] table = index;
+        final int mask = table.length - 1;
+        int i = hash(id) & mask;
+        while (table[i] != EMPTY && table[i] != DELETED) {
+            i = (i + 1) & mask;
+        }
+        if (table[i] == DELETED) {
+            tombstones--;
+        }
+        table[i] = slot + 1;
+        size.incrementAndGet();
+        misses.increment();
+
+        schedule(slot, deadline(now, now));
+        return slot;
+    }
+
+    /**
+     * 容量用完时先回收已过期的会话，再提前复用隔离期中的位置（无锁访问遇到版本变化会重试，只是多一次查找），
+     * 所有位置都是存活的会话时返回 -1，由调用方在锁外淘汰后重试
+     */
+    private int allocateSlot(long now, List<String> removed) {
+        if (freeSlots.isEmpty() && highWater >= maxSessions) {
+            sweepLocked(now, removed);
+            if (!cooling.isEmpty() || !quarantine.isEmpty()) {
+                // 先复用释放更早的位置
+                final IntList released = cooling.isEmpty() ? quarantine : cooling;
+                earlyReuses.add(released.size());
+                freeSlots.addAll(released);
+                released.clear();
+            }
+        }
+        if (!freeSlots.isEmpty()) {
+            return freeSlots.removeLast();
+        }
+        if (highWater >= maxSessions) {
+            return -1;
+        }
+        final int slot = highWater;
+        if (slabs.get(slot >>> SLAB_SHIFT) == null) {
+            slabs.set(slot >>> SLAB_SHIFT, ByteBuffer.allocateDirect(SLAB_RECORDS * RECORD_BYTES).order(ByteOrder.nativeOrder()));
+        }
+        highWater++;
+        return slot;
+    }
+
+    /**
+     * 淘汰最后访问时间最早的 evictionBatch 个会话，一次扫描的开销由之后创建的多个会话分摊。
+     * 扫描在锁外进行，不阻塞其他会话的查找和创建，加写锁后只淘汰扫描之后没有被访问、释放或复用的会话。
+     * 淘汰的位置直接可用，不经过隔离期：这些会话最久未被访问，无锁访问恰好读到它们的可能最小
+     */
+    private void evict() {
+        final long[] accessTimes = new long[evictionBatch];
+        final long[] candidates = new long[evictionBatch];
+        final int count = leastRecentlyAccessed(accessTimes, candidates);
+        final List<String> removed = new ArrayList<>();
+        final long stamp = lock.writeLock();
+        try {
+            // 扫描期间其他线程已经淘汰或释放了位置
+            if (!freeSlots.isEmpty()) {
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                final int slot = slotOf(candidates[i]);
+                final ByteBuffer slab = slab(slot);
+                final int offset = offset(slot);
+                final int state = (int) INTS.getOpaque(slab, offset + FLAGS);
+                if ((state & IN_USE) == 0 || generation(state) != generation(stateOf(candidates[i]))
+                        || (long) LONGS.getOpaque(slab, offset + LAST_ACCESS) != accessTimes[i]) {
+                    continue;
+                }
+                // 过期清理时位置已经从桶中取出，淘汰时需要自己移除
+                wheel[(int) INTS.getOpaque(slab, offset + SCHEDULED_TICK) & WHEEL_MASK].remove(slot);
+                remove(slot, freeSlots, removed);
+                evictions.increment();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+            notifyRemoved(removed);
+        }
+        if (!removed.isEmpty()) {
+            log.warn("会话数已达上限 {}，淘汰最久未访问的会话 {} 个", maxSessions, removed.size());
+        }
+    }
+
+    /**
+     * 无锁扫描所有使用中的位置，用最大堆选出最后访问时间最早的会话，
+     * 写入访问时间和位置（含读取到的状态字），返回选出的数量
+     */
+    private int leastRecentlyAccessed(long[] accessTimes, long[] candidates) {
+        final int count = accessTimes.length;
+        final int limit = highWater;
+        int heapSize = 0;
+        for (int slot = 0; slot < limit; slot++) {
+            final ByteBuffer slab = slab(slot);
+            final int offset = offset(slot);
+            final int state = (int) INTS.getAcquire(slab, offset + FLAGS);
+            if ((state & IN_USE) == 0) {
+                continue;
+            }
+            final long lastAccess = (long) LONGS.getOpaque(slab, offset + LAST_ACCESS);
+            int i;
+            if (heapSize < count) {
+                // 上浮
+                i = heapSize++;
+                while (i > 0 && accessTimes[(i - 1) >>> 1] < lastAccess) {
+                    accessTimes[i] = accessTimes[(i - 1) >>> 1];
+                    candidates[i] = candidates[(i - 1) >>> 1];
+                    i = (i - 1) >>> 1;
+                }
+            } else if (lastAccess < accessTimes[0]) {
+                // 替换堆顶后下沉
+                i = 0;
+                while (2 * i + 1 < count) {
+                    int child = 2 * i + 1;
+                    if (child + 1 < count && accessTimes[child + 1] > accessTimes[child]) {
+                        child++;
+                    }
+                    if (accessTimes[child] <= lastAccess) {
+                        break;
+                    }
+                    accessTimes[i] = accessTimes[child];
+                    candidates[i] = candidates[child];
+                    i = child;
+                }
+            } else {
+                continue;
+            }
+            accessTimes[i] = lastAccess;
+            candidates[i] = located(slot, state);
+        }
+        return heapSize;
+    }
+
+    private void remove(int slot, IntList freed, List<String> removed) {
+        final ByteBuffer slab = slab(slot);
+        final int offset = offset(slot);
+        final byte[] id = new byte[slab.get(offset + ID_LENGTH)];
+        slab.get(offset + ID_BYTES, id);
+
+        final int[] table = index;
+        final int mask = table.length - 1;
+        for (int i = hash(id) & mask; table[i] != EMPTY; i = (i + 1) & mask) {
+            if (table[i] == slot + 1) {
+                table[i] = DELETED;
+                tombstones++;
+                break;
+            }
+        }
+        removed.add(release(slot, freed));
+
+        if (tombstones > table.length / 4) {
+            rebuildIndex();
+        }
+    }
+
+    /**
+     * 递增版本号并清除标志位，位置放入 freed（通常是隔离期），返回释放的 sessionId
+     */
+    private String release(int slot, IntList freed) {
+        final ByteBuffer slab = slab(slot);
+        final int offset = offset(slot);
+        final int state = (int) INTS.getOpaque(slab, offset + FLAGS);
+        INTS.setRelease(slab, offset + FLAGS, (state & ~FLAG_MASK) + (1 << FLAG_BITS));
+        // 先递增版本号再释放用户名，无锁读取拿到被回收的用户 id 时一定能发现版本变化
+        releaseUser((int) INTS.getOpaque(slab, offset + USER_ID));
+        freed.add(slot);
+        size.decrementAndGet();
+
+        final byte[] id = new byte[slab.get(offset + ID_LENGTH)];
+        slab.get(offset + ID_BYTES, id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    private void rebuildIndex() {
+        final int[] table = new int[index.length];
+        final int mask = table.length - 1;
+        for (int slot = 0; slot < highWater; slot++) {
+            final ByteBuffer slab = slab(slot);
+            final int offset = offset(slot);
+            if (((int) INTS.getOpaque(slab, offset + FLAGS) & IN_USE) == 0) {
+                continue;
+            }
+            final byte[] id = new byte[slab.get(offset + ID_LENGTH)];
+            slab.get(offset + ID_BYTES, id);
+            int i = hash(id) & mask;
+            while (table[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            table[i] = slot + 1;
+        }
+        index = table;
+        tombstones = 0;
+        indexRebuilds++;
+    }
+
+    private void sweepSafely() {
+        try {
+            sweep();
+        } catch (Exception e) {
+            log.error("会话过期清理失败", e);
+        }
+    }
+
+    /**
+     * 处理从上次清理到当前刻度之间的所有桶，最多转一圈
+     */
+    private void sweepLocked(long now, List<String> expired) {
+        final long currentTick = now / tickMillis;
+        final long from = Math.max(lastSweptTick + 1, currentTick - WHEEL_MASK);
+        for (long tick = from; tick <= currentTick; tick++) {
+            // 先推进刻度，重新调度的会话不会放回正在处理的桶
+            lastSweptTick = tick;
+            final IntList bucket = wheel[(int) (tick & WHEEL_MASK)];
+            final int[] slots = bucket.toArray();
+            bucket.clear();
+            for (int slot : slots) {
+                final ByteBuffer slab = slab(slot);
+                final int offset = offset(slot);
+                // 位置已被释放
+                if (((int) INTS.getOpaque(slab, offset + FLAGS) & IN_USE) == 0) {
+                    continue;
+                }
+                // 时钟跳过超过一圈时，较早刻度的会话在同一个桶的较晚刻度才被处理，同样检查是否到期；
+                // 调度在更晚刻度的位置不属于这一轮，原样放回
+                if ((int) INTS.getOpaque(slab, offset + SCHEDULED_TICK) - (int) tick > 0) {
+                    bucket.add(slot);
+                    continue;
+                }
+                final long deadline = deadline((long) LONGS.getOpaque(slab, offset + LAST_ACCESS),
+                        (long) LONGS.getOpaque(slab, offset + CREATION));
+                if (deadline <= now) {
+                    remove(slot, quarantine, expired);
+                    expirations.increment();
+                } else {
+                    schedule(slot, deadline);
+                }
+            }
+        }
+    }
+
+    /**
+     * 超出时间轮一圈的期限先放在一圈内，到期时检查后再次调度
+     */
+    private void schedule(int slot, long deadline) {
+        final long tick = Math.min(Math.max(deadline / tickMillis, lastSweptTick + 1), lastSweptTick + WHEEL_MASK);
+        INTS.setOpaque(slab(slot), offset(slot) + SCHEDULED_TICK, (int) tick);
+        wheel[(int) (tick & WHEEL_MASK)].add(slot);
+    }
+
+    private long deadline(long lastAccess, long creation) {
+        return Math.min(lastAccess + idleTimeoutMillis, creation + maxLifetimeMillis);
+    }
+
+    /**
+     * 读取记录快照，读取期间版本号变化（记录被释放）时返回 null
+     */
+    private ChatSession snapshot(String sessionId, ByteBuffer slab, int offset, int state) {
+        final int userId = (int) INTS.getOpaque(slab, offset + USER_ID);
+        final String userName = userId == NO_USER ? null : userNames.get(userId);
+        final long lastAccess = (long) LONGS.getOpaque(slab, offset + LAST_ACCESS);
+        final long creation = (long) LONGS.getOpaque(slab, offset + CREATION);
+        VarHandle.acquireFence();
+        final int current = (int) INTS.getOpaque(slab, offset + FLAGS);
+        if (generation(current) != generation(state) || (current & IN_USE) == 0) {
+            return null;
+        }
+        ChatSession session = new ChatSession();
+        session.setSessionId(sessionId);
+        session.setUserName(userName);
+        session.setPausedForHuman((current & PAUSED_FOR_HUMAN) != 0);
+        session.setTyping((current & TYPING) != 0);
+        session.setLastAccessTime(lastAccess);
+        session.setCreationTime(creation);
+        return session;
+    }
+
+    private boolean matches(int slot, byte[] id) {
+        final ByteBuffer slab = slab(slot);
+        final int offset = offset(slot);
+        // 乐观读期间可能看到尚未发布的 slab，由 validate 重试
+        if (slab == null || slab.get(offset + ID_LENGTH) != id.length) {
+            return false;
+        }
+        for (int i = 0; i < id.length; i++) {
+            if (slab.get(offset + ID_BYTES + i) != id[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 用户名按引用计数驻留，最后一个会话释放后回收，id 复用
+     */
+    private int internUser(String userName) {
+        if (userName == null) {
+            return NO_USER;
+        }
+        InternedUser user = users.get(userName);
+        if (user == null) {
+            user = new InternedUser(freeUserIds.isEmpty() ? userSequence++ : freeUserIds.removeLast());
+            users.put(userName, user);
+            userNames.put(user.id, userName);
+        }
+        user.references++;
+        return user.id;
+    }
+
+    private void releaseUser(int userId) {
+        if (userId == NO_USER) {
+            return;
+        }
+        final String userName = userNames.get(userId);
+        final InternedUser user = userName == null ? null : users.get(userName);
+        if (user != null && --user.references == 0) {
+            users.remove(userName);
+            userNames.remove(userId);
+            freeUserIds.add(userId);
+        }
+    }
+
+    private void notifyRemoved(List<String> sessionIds) {
+        for (String sessionId : sessionIds) {
+            for (Consumer<String> listener : removalListeners) {
+                try {
+                    listener.accept(sessionId);
+                } catch (Exception e) {
+                    log.warn("会话移除回调失败 session:{}", sessionId, e);
+                }
+            }
+        }
+    }
+
+    private ByteBuffer slab(int slot) {
+        return slabs.get(slot >>> SLAB_SHIFT);
+    }
+
+    private static int offset(int slot) {
+        return (slot & SLAB_MASK) * RECORD_BYTES;
+    }
+
+    private static long located(int slot, int state) {
+        return ((long) slot << Integer.SIZE) | (state & 0xFFFFFFFFL);
+    }
+
+    private static int slotOf(long located) {
+        return (int) (located >>> Integer.SIZE);
+    }
+
+    private static int stateOf(long located) {
+        return (int) located;
+    }
+
+    private static int generation(int state) {
+        return state >>> FLAG_BITS;
+    }
+
+    private static byte[] encode(String sessionId) {
+        final byte[] id = sessionId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("sessionId 长度超过 " + MAX_ID_BYTES + " 字节");
+        }
+        return id;
+    }
+
+    private static int hash(byte[] id) {
+        int hash = Arrays.hashCode(id);
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int indexCapacity(int maxSessions) {
+        // 负载因子不超过 0.5
+        return Integer.highestOneBit(Math.max(maxSessions, 2) - 1) << 2;
+    }
+
+    private static final class InternedUser {
+        private final int id;
+        private int references;
+
+        InternedUser(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * 可增长的 int 列表，避免装箱
+     */
+    private static final class IntList {
+        private int[] values = new int[8];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        int removeLast() {
+            return values[--size];
+        }
+
+        /**
+         * 用最后一个元素填补，不保持顺序
+         */
+        void remove(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    values[i] = values[--size];
+                    return;
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        void clear() {
+            size = 0;
+            if (values.length > 1024) {
+                values = new int[8];
+            }
+        }
+    }
+}
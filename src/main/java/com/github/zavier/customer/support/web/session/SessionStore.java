@@ -0,0 +1,46 @@
+package com.github.zavier.customer.support.web.session;
+
+import com.github.zavier.customer.support.web.ChatController.ChatSession;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * 聊天会话存储，读取会同时刷新最后访问时间；返回的 ChatSession 是快照，修改需要通过对应的方法
+ */
+public interface SessionStore {
+
+    /**
+     * 获取会话，不存在时创建。会话数达到上限时淘汰其他会话（触发 removal 回调），不会因为容量失败
+     */
+    ChatSession getOrCreate(String sessionId, String userName);
+
+    Optional<ChatSession> get(String sessionId);
+
+    /**
+     * @return 会话不存在时返回 false
+     */
+    boolean setPausedForHuman(String sessionId, boolean paused);
+
+    boolean setTyping(String sessionId, boolean typing);
+
+    long size();
+
+    long pausedForHumanCount();
+
+    /**
+     * 清空所有会话，返回清除的数量
+     */
+    long clear();
+
+    /**
+     * 会话过期、被淘汰或清空后回调，参数为 sessionId，用于释放会话关联的资源
+     */
+    void addRemovalListener(Consumer<String> listener);
+
+    /**
+     * 包含 hitRate、missRate、requestCount 以及实现相关的统计
+     */
+    Map<String, Object> stats();
+}
@@ -5,6 +5,10 @@ class ChatApp {
         this.ws = null;
         this.isTyping = false;
         this.currentHumanReviewMessageId = null;
+        // clientMessageId -> {resolve, reject, timer}，用于关联 WebSocket 回复
+        this.pendingRequests = new Map();
+        this.requestSeq = 0;
+        this.heartbeatTimer = null;
 
         this.init();
     }
@@ -28,6 +32,19 @@ class ChatApp {
         this.ws.onopen = () => {
             console.log('WebSocket连接已建立');
             this.updateStatus('在线');
+            // 绑定聊天会话，用于接收处理进度
+            this.ws.send(JSON.stringify({
+                type: 'register',
+                sessionId: this.sessionId,
+                userName: this.userName,
+                timestamp: Date.now()
+            }));
+            // 心跳，服务端长时间收不到任何帧会关闭连接
+            this.heartbeatTimer = setInterval(() => {
+                if (this.ws.readyState === WebSocket.OPEN) {
+                    this.ws.send(JSON.stringify({ type: 'ping', timestamp: Date.now() }));
+                }
+            }, 20000);
         };
 
         this.ws.onmessage = (event) => {
@@ -42,6 +59,8 @@ class ChatApp {
         this.ws.onclose = () => {
             console.log('WebSocket连接已关闭');
             this.updateStatus('离线');
+            clearInterval(this.heartbeatTimer);
+            this.rejectPendingRequests('连接已关闭');
             // 尝试重连
             setTimeout(() => this.initWebSocket(), 3000);
         };
@@ -65,6 +84,106 @@ class ChatApp {
             case 'typing':
                 this.handleTypingIndicator(message);
                 break;
+            case 'progress':
+                this.handleProgress(message);
+                break;
+            case 'ack':
+                console.log(`请求 ${message.clientMessageId} 已被接收`);
+                break;
+            case 'reply':
+                this.settleRequest(message.clientMessageId, request => request.resolve({
+                    id: message.messageId,
+                    type: 'assistant',
+                    content: message.content,
+                    status: message.status,
+                    classification: message.classification,
+                    timestamp: message.timestamp
+                }));
+                break;
+            case 'busy':
+                this.settleRequest(message.clientMessageId, request => request.reject(new Error('服务繁忙')));
+                break;
+        }
+    }
+
+    /**
+     * 通过 WebSocket 发送 message/resume 请求，按 clientMessageId 等待对应的 reply
+     */
+    requestOverWebSocket(frame) {
+        return new Promise((resolve, reject) => {
+            const clientMessageId = `${this.sessionId}_${++this.requestSeq}`;
+            const timer = setTimeout(() => {
+                this.settleRequest(clientMessageId, request => request.reject(new Error('请求超时')));
+            }, 120000);
+            this.pendingRequests.set(clientMessageId, { resolve, reject, timer });
+            this.ws.send(JSON.stringify({
+                ...frame,
+                clientMessageId: clientMessageId,
+                sessionId: this.sessionId,
+                userName: this.userName,
+                timestamp: Date.now()
+            }));
+        });
+    }
+
+    settleRequest(clientMessageId, action) {
+        const request = this.pendingRequests.get(clientMessageId);
+        if (request) {
+            this.pendingRequests.delete(clientMessageId);
+            clearTimeout(request.timer);
+            action(request);
+        }
+    }
+
+    rejectPendingRequests(reason) {
+        for (const clientMessageId of [...this.pendingRequests.keys()]) {
+            this.settleRequest(clientMessageId, request => request.reject(new Error(reason)));
+        }
+    }
+
+    isWebSocketOpen() {
+        return this.ws && this.ws.readyState === WebSocket.OPEN;
+    }
+
+    async sendOverRest(message) {
+        const response = await fetch('/api/chat/send', {
+            method: 'POST',
+            headers: {
+                'Content-Type': 'application/json',
+            },
+            body: JSON.stringify({
+                message: message,
+                userName: this.userName,
+                sessionId: this.sessionId
+            })
+        });
+
+        // 被限流时服务端同样返回一条消息
+        if (!response.ok && response.status !== 429) {
+            throw new Error(`HTTP error! status: ${response.status}`);
+        }
+        return response.json();
+    }
+
+    handleProgress(message) {
+        const stageText = {
+            'classified': '已识别问题类型，正在处理',
+            'searching': '正在检索帮助文档',
+            'searched': '已检索帮助文档，正在生成回复',
+            'drafting': '正在生成回复',
+            'ticket_created': '已创建问题工单，正在生成回复',
+            'drafted': '回复已生成',
+            'awaiting_review': '等待人工审核'
+        };
+        let text = stageText[message.stage] || message.stage;
+        if (message.stage === 'classified' && message.classification) {
+            text += `（${message.classification.intent} / ${message.classification.urgency}）`;
+        }
+        console.log(`节点 ${message.node} ${message.stage}，耗时 ${message.durationMs}ms，累计 ${message.elapsedMs}ms`);
+
+        const progressElement = document.getElementById('typing-progress');
+        if (progressElement) {
+            progressElement.textContent = text;
         }
     }
 
@@ -129,23 +248,10 @@ class ChatApp {
         this.showTypingIndicator();
 
         try {
-            const response = await fetch('/api/chat/send', {
-                method: 'POST',
-                headers: {
-                    'Content-Type': 'application/json',
-                },
-                body: JSON.stringify({
-                    message: message,
-                    userName: this.userName,
-                    sessionId: this.sessionId
-                })
-            });
-
-            if (!response.ok) {
-                throw new Error(`HTTP error! status: ${response.status}`);
-            }
-
-            const assistantMessage = await response.json();
+            // WebSocket 可用时复用长连接，否则退回 REST 接口
+            const assistantMessage = this.isWebSocketOpen()
+                ? await this.requestOverWebSocket({ type: 'message', content: message })
+                : await this.sendOverRest(message);
 
             // 隐藏正在输入指示器
             this.hideTypingIndicator();
@@ -232,6 +338,10 @@ class ChatApp {
     hideTypingIndicator() {
         const indicator = document.getElementById('typing-indicator');
         indicator.classList.remove('show');
+        const progressElement = document.getElementById('typing-progress');
+        if (progressElement) {
+            progressElement.textContent = '';
+        }
     }
 
     showHumanReviewModal(message) {
@@ -253,16 +363,20 @@ class ChatApp {
         this.hideHumanReviewModal();
 
         try {
-            const response = await fetch(`/api/chat/resume?sessionId=${this.sessionId}&feedback=${feedback}`, {
-                method: 'POST'
-            });
+            let result;
+            if (this.isWebSocketOpen()) {
+                result = await this.requestOverWebSocket({ type: 'resume', content: feedback });
+            } else {
+                const response = await fetch(`/api/chat/resume?sessionId=${this.sessionId}&feedback=${feedback}`, {
+                    method: 'POST'
+                });
 
-            if (!response.ok) {
-                throw new Error(`HTTP error! status: ${response.status}`);
+                if (!response.ok) {
+                    throw new Error(`HTTP error! status: ${response.status}`);
+                }
+                result = await response.json();
             }
 
-            const result = await response.json();
-
             // 更新之前的消息状态
             this.updateMessageStatus(this.currentHumanReviewMessageId, 'completed');
 
@@ -350,7 +464,8 @@ class ChatApp {
             'sent': '已发送',
             'waiting_human': '等待人工审核',
             'completed': '已完成',
-            'error': '发送失败'
+            'error': '发送失败',
+            'rate_limited': '请求过于频繁'
         };
         return statusMap[status] || status;
     }
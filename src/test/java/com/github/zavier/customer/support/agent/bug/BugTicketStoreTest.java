@@ -0,0 +1,77 @@
+package com.github.zavier.customer.support.agent.bug;
+
+import com.github.zavier.customer.support.config.BugTrackingProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BugTicketStoreTest {
+
+    private static final String LOGIN = "点击登录按钮后页面一直转圈，无法进入首页";
+    private static final String PAYMENT = "支付成功后订单状态仍然显示待付款";
+    private static final String EXPORT = "导出报表时提示文件生成失败，错误码 E5001";
+    private static final String UPLOAD = "上传头像图片后显示空白，刷新也没有变化";
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    @Test
+    void mergesSimilarReportsIntoTheOpenTicket() {
+        final BugTicketStore store = store(10, Duration.ofHours(1));
+
+        final BugTicketStore.Report first = store.report(LOGIN, "登录");
+        final BugTicketStore.Report second = store.report(LOGIN + "！", "登录");
+
+        assertThat(first.duplicate()).isFalse();
+        assertThat(second.duplicate()).isTrue();
+        assertThat(second.ticket().id()).isEqualTo(first.ticket().id());
+        assertThat(second.ticket().reports()).isEqualTo(2);
+    }
+
+    @Test
+    void evictsTheLeastRecentlyReportedTicketAtCapacity() {
+        final BugTicketStore store = store(3, Duration.ofHours(1));
+        store.report(LOGIN, "登录");
+        clock.addAndGet(10);
+        store.report(PAYMENT, "支付");
+        clock.addAndGet(10);
+        store.report(EXPORT, "报表");
+        // 登录问题再次上报，最久没有上报的变为支付问题
+        clock.addAndGet(10);
+        assertThat(store.report(LOGIN, "登录").duplicate()).isTrue();
+
+        clock.addAndGet(10);
+        store.report(UPLOAD, "头像");
+
+        assertThat(store.stats()).containsEntry("openTickets", 3);
+        assertThat(store.stats()).containsEntry("evicted", 1L);
+        assertThat(store.report(LOGIN, "登录").duplicate()).isTrue();
+        assertThat(store.report(EXPORT, "报表").duplicate()).isTrue();
+        assertThat(store.report(PAYMENT, "支付").duplicate()).isFalse();
+    }
+
+    @Test
+    void closesExpiredTicketsBeforeEvictingOpenOnes() {
+        final BugTicketStore store = store(2, Duration.ofMillis(50));
+        store.report(LOGIN, "登录");
+        clock.addAndGet(60);
+        store.report(PAYMENT, "支付");
+        clock.addAndGet(40);
+
+        // 登录问题已过期，关闭它即可腾出位置
+        store.report(EXPORT, "报表");
+
+        assertThat(store.stats()).containsEntry("expired", 1L);
+        assertThat(store.stats()).containsEntry("evicted", 0L);
+        assertThat(store.report(PAYMENT, "支付").duplicate()).isTrue();
+    }
+
+    private BugTicketStore store(int maxOpenTickets, Duration openDuration) {
+        final BugTrackingProperties properties = new BugTrackingProperties();
+        properties.setMaxOpenTickets(maxOpenTickets);
+        properties.setOpenDuration(openDuration);
+        return new BugTicketStore(properties, clock::get);
+    }
+}
@@ -0,0 +1,164 @@
+package com.github.zavier.customer.support.agent.serializer;
+
+import org.bsc.langgraph4j.RunnableConfig;
+import org.bsc.langgraph4j.checkpoint.Checkpoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeltaCheckpointSaverTest {
+
+    private static final RunnableConfig THREAD = RunnableConfig.builder().threadId("thread-1").build();
+
+    @Test
+    void restoresEveryCheckpointFromKeyframesAndDeltas() throws Exception {
+        final DeltaCheckpointSaver saver = new DeltaCheckpointSaver();
+        final List<Checkpoint> written = putSteps(saver, 20);
+
+        assertThat(saver.get(THREAD).orElseThrow().getState()).isEqualTo(written.get(19).getState());
+        for (Checkpoint checkpoint : written) {
+            assertThat(saver.get(at(checkpoint)).orElseThrow().getState()).isEqualTo(checkpoint.getState());
+        }
+        // list 最新的在前
+        final List<Checkpoint> listed = new ArrayList<>(saver.list(THREAD));
+        assertThat(listed.size()).isEqualTo(20);
+        for (int i = 0; i < listed.size(); i++) {
+            assertThat(listed.get(i).getId()).isEqualTo(written.get(19 - i).getId());
+            assertThat(listed.get(i).getState()).isEqualTo(written.get(19 - i).getState());
+        }
+    }
+
+    @Test
+    void writesAKeyframeEveryEightCheckpoints() throws Exception {
+        final DeltaCheckpointSaver saver = new DeltaCheckpointSaver();
+        putSteps(saver, 17);
+
+        // 第 1、9、17 个检查点为完整状态
+        assertThat(saver.stats()).containsEntry("keyframes", 3L);
+        assertThat(saver.stats()).containsEntry("deltas", 14L);
+    }
+
+    @Test
+    void replacingACheckpointKeepsNeighboursIntact() throws Exception {
+        final DeltaCheckpointSaver saver = new DeltaCheckpointSaver();
+        final List<Checkpoint> written = putSteps(saver, 6);
+
+        final Map<String, Object> edited = new HashMap<>(written.get(2).getState());
+        edited.put("humanDecision", "approve");
+        edited.remove("searchResults");
+        saver.put(at(written.get(2)), checkpoint(written.get(2).getId(), edited));
+
+        assertThat(saver.get(at(written.get(2))).orElseThrow().getState()).isEqualTo(edited);
+        // 后一个检查点原本是基于被替换状态的增量
+        assertThat(saver.get(at(written.get(3))).orElseThrow().getState()).isEqualTo(written.get(3).getState());
+        assertThat(saver.get(THREAD).orElseThrow().getState()).isEqualTo(written.get(5).getState());
+
+        // 替换后继续追加，增量仍基于最新状态
+        final List<Checkpoint> more = putSteps(saver, 3);
+        assertThat(saver.get(THREAD).orElseThrow().getState()).isEqualTo(more.get(2).getState());
+    }
+
+    @Test
+    void replacingTheLatestCheckpointUpdatesTheDeltaBase() throws Exception {
+        final DeltaCheckpointSaver saver = new DeltaCheckpointSaver();
+        final List<Checkpoint> written = putSteps(saver, 3);
+
+        final Map<String, Object> edited = new HashMap<>(written.get(2).getState());
+        edited.put("draftResponse", "人工修改后的回复");
+        saver.put(at(written.get(2)), checkpoint(written.get(2).getId(), edited));
+
+        final Map<String, Object> next = new HashMap<>(edited);
+        next.put("currentStep", "sendReply");
+        final Checkpoint appended = checkpoint(UUID.randomUUID().toString(), next);
+        saver.put(THREAD, appended);
+
+        assertThat(saver.get(THREAD).orElseThrow().getState()).isEqualTo(next);
+    }
+
+    @Test
+    void replacingAnUnknownCheckpointFails() throws Exception {
+        final DeltaCheckpointSaver saver = new DeltaCheckpointSaver();
+        putSteps(saver, 2);
+
+        final RunnableConfig unknown = RunnableConfig.builder(THREAD).checkPointId("missing").build();
+        assertThatThrownBy(() -> saver.put(unknown, checkpoint("missing", Map.of())))
+                .isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void trimsOldestCheckpointsAndKeepsTheRestReadable() throws Exception {
+        final DeltaCheckpointSaver saver = new DeltaCheckpointSaver(5);
+        final List<Checkpoint> written = putSteps(saver, 12);
+
+        final List<Checkpoint> listed = new ArrayList<>(saver.list(THREAD));
+        assertThat(listed.size()).isEqualTo(5);
+        for (int i = 0; i < 5; i++) {
+            assertThat(listed.get(i).getState()).isEqualTo(written.get(11 - i).getState());
+        }
+        assertThat(saver.get(at(written.get(6))).isPresent()).isFalse();
+        assertThat(saver.stats()).containsEntry("trimmed", 7L);
+
+        // 裁剪后的最旧检查点作为完整状态，后续追加仍可还原
+        final List<Checkpoint> more = putSteps(saver, 4);
+        assertThat(saver.get(THREAD).orElseThrow().getState()).isEqualTo(more.get(3).getState());
+    }
+
+    @Test
+    void releaseReturnsHistoryAndForgetsTheThread() throws Exception {
+        final DeltaCheckpointSaver saver = new DeltaCheckpointSaver();
+        final List<Checkpoint> written = putSteps(saver, 4);
+
+        final List<Checkpoint> released = new ArrayList<>(saver.release(THREAD).checkpoints());
+
+        assertThat(released.size()).isEqualTo(4);
+        assertThat(released.get(0).getState()).isEqualTo(written.get(3).getState());
+        assertThat(saver.get(THREAD).isPresent()).isFalse();
+    }
+
+    /**
+     * 模拟多轮对话，每一步只改变一部分 key
+     */
+    private static List<Checkpoint> putSteps(DeltaCheckpointSaver saver, int steps) throws Exception {
+        final Map<String, Object> state = saver.get(THREAD)
+                .map(checkpoint -> (Map<String, Object>) new HashMap<>(checkpoint.getState()))
+                .orElseGet(HashMap::new);
+        List<Checkpoint> written = new ArrayList<>();
+        for (int step = 0; step < steps; step++) {
+            switch (step % 3) {
+                case 0 -> {
+                    state.put("messageContent", "第 " + step + " 步：我无法登录账户");
+                    state.put("userName", "alice");
+                    state.remove("draftResponse");
+                }
+                case 1 -> state.put("searchResults", List.of("[faq.md] 第 " + step + " 步的检索结果"));
+                default -> state.put("draftResponse", "第 " + step + " 步的回复");
+            }
+            state.put("currentStep", "step-" + step);
+            final Checkpoint checkpoint = checkpoint(UUID.randomUUID().toString(), new HashMap<>(state));
+            saver.put(THREAD, checkpoint);
+            written.add(checkpoint);
+        }
+        return written;
+    }
+
+    private static Checkpoint checkpoint(String id, Map<String, Object> state) {
+        return Checkpoint.builder()
+                .id(id)
+                .nodeId("node")
+                .nextNodeId("next")
+                .state(state)
+                .build();
+    }
+
+    private static RunnableConfig at(Checkpoint checkpoint) {
+        return RunnableConfig.builder(THREAD).checkPointId(checkpoint.getId()).build();
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.zavier.customer.support.agent.serializer;
+
+import com.github.zavier.customer.support.agent.MessageClassification;
+import com.github.zavier.customer.support.agent.constant.Intent;
+import com.github.zavier.customer.support.agent.constant.Urgency;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StateCodecTest {
+
+    @Test
+    void roundTripsKnownKeysAndValueTypes() throws Exception {
+        Map<String, Object> state = new HashMap<>();
+        state.put("messageContent", "我无法登录账户，提示密码错误");
+        state.put("userName", "alice");
+        state.put("classification", new MessageClassification(Intent.QUESTION, Urgency.HIGH, "账户登录", "用户无法登录"));
+        state.put("searchResults", List.of("[faq.md] 重置密码", "[login.md] 登录说明"));
+        state.put("customerHistory", Map.of("lastOrder", "A1001", "level", "vip"));
+        state.put("draftResponse", "");
+        state.put("humanDecision", null);
+        state.put("customKey", "不在预定义 key 中");
+
+        assertThat(roundTrip(state)).isEqualTo(state);
+    }
+
+    @Test
+    void roundTripsClassificationWithMissingFields() throws Exception {
+        Map<String, Object> state = new HashMap<>();
+        state.put("classification", new MessageClassification(null, null, null, null));
+
+        assertThat(roundTrip(state)).isEqualTo(state);
+    }
+
+    @Test
+    void fallsBackToJavaSerializationForOtherValues() throws Exception {
+        Map<String, Object> state = new HashMap<>();
+        state.put("retries", 3);
+        state.put("followUpDate", LocalDate.of(2026, 10, 19));
+        // 元素不全是字符串的列表不能按字符串列表编码
+        state.put("mixed", List.of("a", 1));
+
+        final Map<String, Object> restored = roundTrip(state);
+
+        assertThat(restored).isEqualTo(state);
+        assertThat(restored.get("followUpDate")).isInstanceOf(LocalDate.class);
+    }
+
+    @Test
+    void rejectsValuesThatCannotBeSerialized() {
+        Map<String, Object> state = new HashMap<>();
+        state.put("lock", new Object());
+
+        assertThatThrownBy(() -> encode(state)).isInstanceOf(NotSerializableException.class);
+    }
+
+    @Test
+    void deltaCarriesChangedAndRemovedKeysOnly() throws Exception {
+        Map<String, Object> previous = new HashMap<>();
+        previous.put("messageContent", "我无法登录账户");
+        previous.put("searchResults", List.of("账户安全相关说明，".repeat(50)));
+        previous.put("draftResponse", "旧的回复");
+        Map<String, Object> current = new HashMap<>(previous);
+        current.remove("draftResponse");
+        current.put("currentStep", "draftResponse");
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            StateCodec.writeDelta(previous, current, out);
+        }
+        Map<String, Object> restored = new HashMap<>(previous);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            StateCodec.applyDelta(restored, in);
+        }
+
+        assertThat(restored).isEqualTo(current);
+        // 未变化的检索结果不应出现在增量中
+        assertThat(bytes.size() < encode(current).length / 4).isTrue();
+    }
+
+    @Test
+    void rejectsUnknownFormatVersion() throws Exception {
+        final byte[] bytes = encode(Map.of("userName", "alice"));
+        bytes[0] = 99;
+
+        assertThatThrownBy(() -> decode(bytes)).isInstanceOf(IOException.class);
+    }
+
+    private static Map<String, Object> roundTrip(Map<String, Object> state) throws Exception {
+        return decode(encode(state));
+    }
+
+    private static byte[] encode(Map<String, Object> state) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            StateCodec.writeState(state, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Map<String, Object> decode(byte[] bytes) throws Exception {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return StateCodec.readState(in);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.zavier.customer.support.web.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    void allowsBurstUpToCapacityThenRejects() {
+        TokenBucket bucket = new TokenBucket(3, 60, START);
+
+        assertThat(bucket.tryAcquire(START)).isZero();
+        assertThat(bucket.tryAcquire(START)).isZero();
+        assertThat(bucket.tryAcquire(START)).isZero();
+        // 每分钟 60 个即每秒 1 个，需要等待 1 秒
+        assertThat(bucket.tryAcquire(START)).isEqualTo(1000);
+    }
+
+    @Test
+    void refillsOverTime() {
+        TokenBucket bucket = new TokenBucket(1, 60, START);
+        assertThat(bucket.tryAcquire(START)).isZero();
+
+        assertThat(bucket.tryAcquire(START + 500)).isEqualTo(500);
+        assertThat(bucket.tryAcquire(START + 1000)).isZero();
+        assertThat(bucket.tryAcquire(START + 1000)).isPositive();
+    }
+
+    @Test
+    void refillNeverExceedsCapacity() {
+        TokenBucket bucket = new TokenBucket(2, 60, START);
+        assertThat(bucket.tryAcquire(START)).isZero();
+        assertThat(bucket.tryAcquire(START)).isZero();
+
+        final long later = START + TimeUnit.HOURS.toMillis(1);
+        assertThat(bucket.tryAcquire(later)).isZero();
+        assertThat(bucket.tryAcquire(later)).isZero();
+        assertThat(bucket.tryAcquire(later)).isPositive();
+    }
+
+    @Test
+    void accumulatesFractionalRefillAcrossRejectedCalls() {
+        // 每分钟 1 个令牌，期间的多次拒绝不能丢失已累积的部分
+        TokenBucket bucket = new TokenBucket(1, 1, START);
+        assertThat(bucket.tryAcquire(START)).isZero();
+
+        for (int second = 10; second < 60; second += 10) {
+            assertThat(bucket.tryAcquire(START + second * 1000L)).isPositive();
+        }
+        assertThat(bucket.tryAcquire(START + 60_000)).isZero();
+    }
+
+    @Test
+    void capacityIsClampedToPackedRange() {
+        TokenBucket bucket = new TokenBucket(TokenBucket.MAX_CAPACITY + 100, 0, START);
+
+        for (int i = 0; i < TokenBucket.MAX_CAPACITY; i++) {
+            assertThat(bucket.tryAcquire(START)).isZero();
+        }
+        assertThat(bucket.tryAcquire(START)).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void largeElapsedTimeDoesNotOverflowPackedState() {
+        TokenBucket bucket = new TokenBucket(5, 20, START);
+        assertThat(bucket.tryAcquire(START)).isZero();
+
+        // 一年后的时间戳仍在 40 位毫秒数范围内，令牌数恢复到容量而不是溢出
+        final long later = START + TimeUnit.DAYS.toMillis(365);
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.tryAcquire(later)).isZero();
+        }
+        assertThat(bucket.tryAcquire(later)).isPositive();
+    }
+
+    @Test
+    void zeroRefillRejectsForeverOnceEmpty() {
+        TokenBucket bucket = new TokenBucket(1, 0, START);
+        assertThat(bucket.tryAcquire(START)).isZero();
+        assertThat(bucket.tryAcquire(START + TimeUnit.DAYS.toMillis(1))).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void concurrentAcquiresNeverExceedCapacity() throws Exception {
+        final int capacity = 1000;
+        final int threads = 8;
+        TokenBucket bucket = new TokenBucket(capacity, 0, START);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    ready.await();
+                    int acquired = 0;
+                    for (int i = 0; i < capacity; i++) {
+                        if (bucket.tryAcquire(START) == 0) {
+                            acquired++;
+                        }
+                    }
+                    return acquired;
+                }));
+            }
+            ready.countDown();
+
+            int total = 0;
+            for (Future<Integer> result : results) {
+                total += result.get(10, TimeUnit.SECONDS);
+            }
+            assertThat(total).isEqualTo(capacity);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
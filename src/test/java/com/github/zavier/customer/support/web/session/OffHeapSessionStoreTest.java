@@ -0,0 +1,315 @@
+package com.github.zavier.customer.support.web.session;
+
+import com.github.zavier.customer.support.config.SessionProperties;
+import com.github.zavier.customer.support.web.ChatController.ChatSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapSessionStoreTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    private final AtomicLong clock = new AtomicLong(START);
+    private final List<String> removed = new CopyOnWriteArrayList<>();
+    private OffHeapSessionStore store;
+
+    @AfterEach
+    void close() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void quarantinedSlotsAreReusedBeforeEvictingLiveSessions() {
+        store(2, Duration.ofSeconds(10), Duration.ofHours(1));
+        store.getOrCreate("a", "alice");
+        store.getOrCreate("b", "bob");
+
+        advance(Duration.ofSeconds(11));
+        store.sweep();
+        assertThat(store.size()).isZero();
+        assertThat(removed).containsExactlyInAnyOrder("a", "b");
+
+        // 刚过期的位置仍在隔离期，容量已满时提前复用，而不是淘汰存活的会话
+        final ChatSession session = store.getOrCreate("c", "carol");
+        assertThat(session.getUserName()).isEqualTo("carol");
+        assertThat(store.getOrCreate("d", "dave").getUserName()).isEqualTo("dave");
+        assertThat(store.get("a")).isEmpty();
+        assertThat(store.get("b")).isEmpty();
+        assertThat(store.stats()).containsEntry("earlyReuses", 2L).containsEntry("evictions", 0L);
+        assertThat(removed).containsExactlyInAnyOrder("a", "b");
+    }
+
+    @Test
+    void clearQuarantinesSlotsAndNotifiesListeners() {
+        store(1, Duration.ofSeconds(10), Duration.ofHours(1));
+        store.getOrCreate("a", "alice");
+
+        assertThat(store.clear()).isEqualTo(1);
+        assertThat(removed).containsExactly("a");
+        assertThat(store.get("a")).isEmpty();
+
+        assertThat(store.getOrCreate("b", "bob").getUserName()).isEqualTo("bob");
+        assertThat(removed).containsExactly("a");
+    }
+
+    @Test
+    void fullStoreEvictsLeastRecentlyAccessedSessions() {
+        store(4, 2, Duration.ofSeconds(30), Duration.ofHours(1));
+        for (String sessionId : List.of("a", "b", "c", "d")) {
+            store.getOrCreate(sessionId, "alice");
+            advance(Duration.ofSeconds(1));
+        }
+        store.get("a");
+
+        // 一次淘汰最久未访问的两个会话，第二个新会话直接使用淘汰出的位置
+        store.getOrCreate("e", "eve");
+        assertThat(removed).containsExactlyInAnyOrder("b", "c");
+        store.getOrCreate("f", "frank");
+        assertThat(removed).containsExactlyInAnyOrder("b", "c");
+        assertThat(store.size()).isEqualTo(4);
+        assertThat(store.get("b")).isEmpty();
+        assertThat(store.get("c")).isEmpty();
+        assertThat(store.get("a")).isPresent();
+        assertThat(store.get("d")).isPresent();
+        assertThat(store.stats()).containsEntry("evictions", 2L);
+
+        // 淘汰的位置已从时间轮移除，过期清理只处理存活的会话
+        advance(Duration.ofSeconds(31));
+        store.sweep();
+        assertThat(store.size()).isZero();
+        assertThat(removed).containsExactlyInAnyOrder("b", "c", "a", "d", "e", "f");
+        assertThat(store.stats()).containsEntry("expirations", 4L).containsEntry("internedUsers", 0);
+    }
+
+    @Test
+    void internedUsersAreReleasedWithTheirLastSession() {
+        store(8, Duration.ofSeconds(10), Duration.ofHours(1));
+        store.getOrCreate("a", "alice");
+        store.getOrCreate("b", "bob");
+        advance(Duration.ofSeconds(5));
+        store.getOrCreate("c", "alice");
+        assertThat(store.stats()).containsEntry("internedUsers", 2);
+
+        // a、b 过期，c 仍然引用 alice
+        advance(Duration.ofSeconds(6));
+        store.sweep();
+        assertThat(store.stats()).containsEntry("internedUsers", 1);
+        assertThat(store.get("c").map(ChatSession::getUserName)).contains("alice");
+
+        advance(Duration.ofSeconds(11));
+        store.sweep();
+        assertThat(store.size()).isZero();
+        assertThat(store.stats()).containsEntry("internedUsers", 0);
+    }
+
+    @Test
+    void accessedSessionsAreRescheduledUntilIdle() {
+        store(8, Duration.ofSeconds(10), Duration.ofHours(1));
+        store.getOrCreate("a", "alice");
+
+        for (int i = 0; i < 5; i++) {
+            advance(Duration.ofSeconds(8));
+            assertThat(store.get("a")).isPresent();
+            store.sweep();
+        }
+        assertThat(store.size()).isEqualTo(1);
+
+        advance(Duration.ofSeconds(11));
+        store.sweep();
+        assertThat(store.size()).isZero();
+        assertThat(removed).containsExactly("a");
+    }
+
+    @Test
+    void deadlinesBeyondOneWheelTurnAreRescheduled() {
+        // 刻度 1 秒时时间轮一圈约 68 分钟，空闲超时和最长存活时间都超过一圈
+        store(8, Duration.ofHours(2), Duration.ofHours(3));
+        store.getOrCreate("a", "alice");
+
+        for (int i = 0; i < 5; i++) {
+            advance(Duration.ofMinutes(30));
+            assertThat(store.get("a")).isPresent();
+            store.sweep();
+        }
+        assertThat(store.size()).isEqualTo(1);
+
+        advance(Duration.ofMinutes(30));
+        store.sweep();
+        assertThat(store.size()).isZero();
+    }
+
+    @Test
+    void clockJumpBeyondOneWheelTurnStillExpires() {
+        store(8, Duration.ofMinutes(30), Duration.ofHours(24));
+        store.getOrCreate("a", "alice");
+
+        advance(Duration.ofHours(2));
+        store.sweep();
+        assertThat(store.size()).isZero();
+        assertThat(store.get("a")).isEmpty();
+    }
+
+    @Test
+    void tombstoneRebuildKeepsLiveSessionsReachable() throws Exception {
+        // 索引容量 128，墓碑超过 32 个时重建
+        store(64, Duration.ofSeconds(10), Duration.ofHours(1));
+        final List<String> pinned = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            pinned.add("pinned-" + i);
+            store.getOrCreate("pinned-" + i, "user-pinned-" + i);
+        }
+
+        final Queue<String> failures = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final List<Thread> readers = startReaders(2, running, failures, () -> {
+            final String sessionId = pinned.get(ThreadLocalRandom.current().nextInt(pinned.size()));
+            final Optional<ChatSession> session = store.get(sessionId);
+            if (session.isEmpty()) {
+                failures.add("missing " + sessionId);
+            } else if (!("user-" + sessionId).equals(session.get().getUserName())) {
+                failures.add(sessionId + " -> " + session.get().getUserName());
+            }
+        });
+
+        try {
+            for (int round = 0; round < 50; round++) {
+                for (int i = 0; i < 40; i++) {
+                    store.getOrCreate("churn-" + round + "-" + i, "user-churn-" + round + "-" + i);
+                }
+                for (int step = 0; step < 4; step++) {
+                    advance(Duration.ofSeconds(step < 2 ? 6 : 1));
+                    pinned.forEach(store::get);
+                    store.sweep();
+                }
+                for (int i = 0; i < 40; i++) {
+                    assertThat(store.get("churn-" + round + "-" + i)).isEmpty();
+                }
+            }
+        } finally {
+            running.set(false);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+
+        assertThat(failures).isEmpty();
+        assertThat((long) store.stats().get("indexRebuilds")).isPositive();
+        assertThat(store.size()).isEqualTo(pinned.size());
+        for (String sessionId : pinned) {
+            assertThat(store.get(sessionId).map(ChatSession::getUserName)).contains("user-" + sessionId);
+        }
+    }
+
+    @Test
+    void concurrentReadersNeverSeeAnotherSessionsData() throws Exception {
+        store(64, Duration.ofSeconds(10), Duration.ofHours(1));
+        // 读线程只访问已经创建完成的轮次
+        final AtomicInteger currentRound = new AtomicInteger(-1);
+        final Queue<String> failures = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean running = new AtomicBoolean(true);
+
+        final List<Thread> readers = startReaders(4, running, failures, () -> {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            final int round = currentRound.get() - random.nextInt(2);
+            if (round < 0) {
+                return;
+            }
+            final int i = random.nextInt(32);
+            final String sessionId = "r" + round + "-" + i;
+            // 只给偶数编号的会话设置输入状态，奇数编号出现输入状态说明写到了其他会话上
+            if (i % 2 == 0) {
+                store.setTyping(sessionId, true);
+            }
+            store.get(sessionId).ifPresent(session -> {
+                if (!("user-" + sessionId).equals(session.getUserName())) {
+                    failures.add(sessionId + " -> " + session.getUserName());
+                }
+                if (i % 2 == 1 && session.isTyping()) {
+                    failures.add(sessionId + " typing");
+                }
+            });
+        });
+
+        try {
+            for (int round = 0; round < 2_000; round++) {
+                for (int i = 0; i < 32; i++) {
+                    final String sessionId = "r" + round + "-" + i;
+                    assertThat(store.getOrCreate(sessionId, "user-" + sessionId).isTyping()).isFalse();
+                }
+                currentRound.set(round);
+                if (round % 10 == 0) {
+                    store.clear();
+                } else {
+                    advance(Duration.ofSeconds(11));
+                    store.sweep();
+                }
+                for (int step = 0; step < 2; step++) {
+                    advance(Duration.ofSeconds(1));
+                    store.sweep();
+                }
+            }
+        } finally {
+            running.set(false);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+
+        assertThat(failures).isEmpty();
+        assertThat(store.size()).isZero();
+        assertThat(store.stats()).containsEntry("internedUsers", 0);
+    }
+
+    private void store(int maxSessions, Duration idleTimeout, Duration maxLifetime) {
+        store(maxSessions, 1, idleTimeout, maxLifetime);
+    }
+
+    private void store(int maxSessions, int evictionBatch, Duration idleTimeout, Duration maxLifetime) {
+        final SessionProperties properties = new SessionProperties();
+        properties.setMaxSessions(maxSessions);
+        properties.setEvictionBatch(evictionBatch);
+        properties.setIdleTimeout(idleTimeout);
+        properties.setMaxLifetime(maxLifetime);
+        properties.setTick(Duration.ofSeconds(1));
+        store = new OffHeapSessionStore(properties, clock::get, false);
+        store.addRemovalListener(removed::add);
+    }
+
+    private void advance(Duration duration) {
+        clock.addAndGet(duration.toMillis());
+    }
+
+    private static List<Thread> startReaders(int count, AtomicBoolean running, Queue<String> failures, Runnable read) {
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < count; t++) {
+            final Thread reader = new Thread(() -> {
+                while (running.get()) {
+                    try {
+                        read.run();
+                    } catch (RuntimeException e) {
+                        failures.add(e.toString());
+                    }
+                }
+            }, "session-reader-" + t);
+            reader.start();
+            readers.add(reader);
+        }
+        return readers;
+    }
+}